@@ -0,0 +1,48 @@
+#!/bin/bash
+
+# ============================================
+# Compare a JMH result against a stored baseline
+# ============================================
+#
+# Usage: benchmarks/compare.sh benchmarks/baselines/<baseline>.json [target/jmh-result.json] [threshold-percent]
+#
+# A benchmark regresses when its score is worse than the baseline by more than the threshold and by more
+# than the two error margins together. Exits 1 if any benchmark regressed.
+
+set -e
+
+BASELINE="$1"
+CURRENT="${2:-target/jmh-result.json}"
+THRESHOLD="${3:-10}"
+
+if [ -z "$BASELINE" ] || [ ! -f "$BASELINE" ] || [ ! -f "$CURRENT" ]; then
+    echo "Usage: $0 <baseline.json> [current.json] [threshold-percent]" >&2
+    exit 2
+fi
+
+# One line per benchmark and parameter set: key, score, error, unit
+flatten() {
+    jq -r '.[] | [
+        .benchmark + (if .params then " " + (.params | to_entries | map(.key + "=" + .value) | join(",")) else "" end),
+        .primaryMetric.score,
+        (.primaryMetric.scoreError | if . == "NaN" then 0 else . end),
+        .primaryMetric.scoreUnit,
+        .mode
+    ] | @tsv' "$1" | sort
+}
+
+join -t $'\t' <(flatten "$BASELINE") <(flatten "$CURRENT") | awk -F '\t' -v threshold="$THRESHOLD" '
+    {
+        key = $1; base = $2; baseError = $3; unit = $4; mode = $5; score = $6; error = $7
+        # thrpt: higher is better, every other mode measures time
+        worse = (mode == "thrpt") ? base - score : score - base
+        change = base != 0 ? 100 * (score - base) / base : 0
+        status = "ok"
+        if (worse > baseError + error && 100 * worse / base > threshold) {
+            status = "REGRESSED"
+            regressed++
+        }
+        printf "%-10s %+7.1f%%  %12.3f -> %12.3f %s  %s\n", status, change, base, score, unit, key
+    }
+    END { exit regressed > 0 ? 1 : 0 }
+'
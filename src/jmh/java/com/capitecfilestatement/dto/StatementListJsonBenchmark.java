@@ -0,0 +1,67 @@
+package com.capitecfilestatement.dto;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Serializing one page of the statement list, at the default and the maximum page size
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+AlwaysPreTouch"})
+@State(Scope.Benchmark)
+public class StatementListJsonBenchmark {
+
+    @Param({"50", "100"})
+    private int pageSize;
+
+    private ObjectMapper objectMapper;
+    private List<StatementListResponse> page;
+
+    @Setup
+    public void setUp() {
+        // Configured the way Spring Boot builds the application's ObjectMapper
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 31, 9, 30);
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            int year = 2024 - i / 12;
+            int month = 12 - i % 12;
+            page.add(new StatementListResponse(
+                    new UUID(random.nextLong(), random.nextLong()),
+                    "statement_%d-%02d.pdf".formatted(year, month),
+                    "%d-%02d".formatted(year, month),
+                    100_000L + random.nextLong(10_000_000L),
+                    createdAt.minusMonths(i)));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,64 @@
+package com.capitecfilestatement.security;
+
+import com.capitecfilestatement.entity.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Signing a JWT at login, and verifying one per request both through the verified-token cache and without it
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+AlwaysPreTouch"})
+@State(Scope.Benchmark)
+public class JwtTokenProviderBenchmark {
+
+    // Fixed 512-bit key so runs sign and verify identical tokens
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-benchmark-sec";
+    private static final long EXPIRATION_MS = 24 * 60 * 60 * 1000L;
+
+    private JwtTokenProvider cachingProvider;
+    private JwtTokenProvider uncachedProvider;
+    private Customer customer;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        cachingProvider = new JwtTokenProvider(SECRET, EXPIRATION_MS, 10_000, new SimpleMeterRegistry());
+        uncachedProvider = new JwtTokenProvider(SECRET, EXPIRATION_MS, 0, new SimpleMeterRegistry());
+        customer = Customer.builder()
+                .id(UUID.fromString("3f1c2b9e-7d4a-4e55-9a61-0c8f2d7b1e44"))
+                .email("benchmark@example.com")
+                .build();
+        token = cachingProvider.generateToken(customer);
+        cachingProvider.verify(token);
+    }
+
+    @Benchmark
+    public String sign() {
+        return cachingProvider.generateToken(customer);
+    }
+
+    @Benchmark
+    public Optional<JwtTokenProvider.VerifiedToken> verifyCached() {
+        return cachingProvider.verify(token);
+    }
+
+    @Benchmark
+    public Optional<JwtTokenProvider.VerifiedToken> verifyUncached() {
+        return uncachedProvider.verify(token);
+    }
+}
@@ -0,0 +1,66 @@
+package com.capitecfilestatement.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// The CPU-only helpers on the upload and link paths: token generation, key sanitizing and the file checks
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+AlwaysPreTouch"})
+@State(Scope.Benchmark)
+public class StatementServiceBenchmark {
+
+    private static final UUID CUSTOMER_ID = UUID.fromString("3f1c2b9e-7d4a-4e55-9a61-0c8f2d7b1e44");
+
+    @Param({"statement_2024-01.pdf", "Rekeningstaat Januarie 2024 (finaal) – kopie.pdf"})
+    private String fileName;
+
+    private MockMultipartFile file;
+
+    @Setup
+    public void setUp() {
+        byte[] content = new byte[100 * 1024];
+        new SplittableRandom(42).nextBytes(content);
+        System.arraycopy("%PDF-1.7".getBytes(StandardCharsets.US_ASCII), 0, content, 0, 8);
+        file = new MockMultipartFile("file", fileName, "application/pdf", content);
+    }
+
+    @Benchmark
+    public String generateSecureToken() {
+        return StatementService.generateSecureToken();
+    }
+
+    @Benchmark
+    public String generateS3Key() {
+        return StatementService.generateS3Key(CUSTOMER_ID, "2024-01", fileName);
+    }
+
+    @Benchmark
+    public MockMultipartFile validateFile() throws IOException {
+        StatementService.validateFile(file);
+        try (InputStream in = new BufferedInputStream(file.getInputStream())) {
+            StatementService.requirePdfHeader(in);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,59 @@
+package com.capitecfilestatement.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// SHA-256 of an upload the way StatementStorage.put computes it: through a DigestInputStream while the
+// bytes are read into one part-sized buffer
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+AlwaysPreTouch"})
+@State(Scope.Benchmark)
+public class ChecksumBenchmark {
+
+    private static final int PART_SIZE_BYTES = 5 * 1024 * 1024;
+
+    @Param({"102400", "1048576", "10485760"})
+    private int payloadBytes;
+
+    private byte[] payload;
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        payload = new byte[payloadBytes];
+        new SplittableRandom(42).nextBytes(payload);
+        buffer = new byte[PART_SIZE_BYTES];
+    }
+
+    @Benchmark
+    public String sha256WhileReading() throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        try (DigestInputStream in = new DigestInputStream(new ByteArrayInputStream(payload), digest)) {
+            while (in.readNBytes(buffer, 0, buffer.length) > 0) {
+                // Each filled buffer would go out as one part
+            }
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+}
@@ -0,0 +1,149 @@
+package com.capitecfilestatement.loadtest;
+
+import com.capitecfilestatement.dto.AuthResponse;
+import com.capitecfilestatement.dto.DownloadLinkResponse;
+import com.capitecfilestatement.dto.StatementUploadResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+// Thin blocking client for the statement API. Calls return the status and the parsed body on success; the
+// harness decides what counts as an error.
+final class ApiClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final String baseUrl;
+
+    record Result<T>(int status, T body) {
+        boolean succeeded() {
+            return status >= 200 && status < 400;
+        }
+    }
+
+    ApiClient(String baseUrl, Executor executor) {
+        this.baseUrl = baseUrl;
+        // Redirects are not followed, the object behind a download redirect is fetched and timed separately
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+    }
+
+    Result<AuthResponse> register(String email, String password) {
+        return postJson("/api/auth/register", null, Map.of(
+                "email", email,
+                "password", password,
+                "firstName", "Load",
+                "lastName", "Test"), AuthResponse.class);
+    }
+
+    Result<AuthResponse> login(String email, String password) {
+        return postJson("/api/auth/login", null, Map.of("email", email, "password", password), AuthResponse.class);
+    }
+
+    Result<StatementUploadResponse> upload(String jwt, String statementPeriod, byte[] file) {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"statementPeriod\"\r\n\r\n"
+                + statementPeriod + "\r\n"
+                + "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"statement_" + statementPeriod + ".pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        HttpRequest request = request("/api/statements/upload", jwt)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, file, tail)))
+                .build();
+        return send(request, StatementUploadResponse.class);
+    }
+
+    Result<Void> list(String jwt, int limit) {
+        HttpRequest request = request("/api/statements?limit=" + limit, jwt).GET().build();
+        return send(request, null);
+    }
+
+    Result<DownloadLinkResponse> generateLink(String jwt, UUID statementId) {
+        return postJson("/api/statements/generate-link", jwt, Map.of("statementId", statementId), DownloadLinkResponse.class);
+    }
+
+    // The API call alone: a redirect to storage, or the object itself in proxy mode
+    Result<Optional<String>> download(String downloadPath) {
+        HttpRequest request = request(downloadPath, null).GET().build();
+        try {
+            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+            return new Result<>(response.statusCode(), response.headers().firstValue("Location"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+
+    Result<Void> fetch(String url) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url.startsWith("/") ? baseUrl + url : url))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        return send(request, null);
+    }
+
+    Result<Void> delete(String jwt, UUID statementId) {
+        HttpRequest request = request("/api/statements/" + statementId, jwt).DELETE().build();
+        return send(request, null);
+    }
+
+    private <T> Result<T> postJson(String path, String jwt, Object body, Class<T> responseType) {
+        try {
+            HttpRequest request = request(path, jwt)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            return send(request, responseType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path, String jwt) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+        if (jwt != null) {
+            builder.header("Authorization", "Bearer " + jwt);
+        }
+        return builder;
+    }
+
+    private <T> Result<T> send(HttpRequest request, Class<T> responseType) {
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            T body = responseType != null && response.statusCode() < 300
+                    ? objectMapper.readValue(response.body(), responseType)
+                    : null;
+            return new Result<>(response.statusCode(), body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.capitecfilestatement.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency per operation in microseconds, three significant digits. Failed requests are timed as well and
+// counted by status; status 0 stands for a request that got no response at all.
+final class LatencyReport {
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Map<Integer, LongAdder>> failures = new EnumMap<>(Operation.class);
+    private long startedMillis = System.currentTimeMillis();
+
+    LatencyReport() {
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(3));
+            failures.put(operation, new ConcurrentHashMap<>());
+        }
+    }
+
+    void record(Operation operation, long latencyNanos, int status, boolean succeeded) {
+        recorders.get(operation).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        if (!succeeded) {
+            failures.get(operation).computeIfAbsent(status, key -> new LongAdder()).increment();
+        }
+    }
+
+    // Drops everything recorded during warmup
+    void reset() {
+        recorders.values().forEach(Recorder::reset);
+        failures.values().forEach(Map::clear);
+        startedMillis = System.currentTimeMillis();
+    }
+
+    record Row(long count, double opsPerSecond, double p99Millis) {
+    }
+
+    // Returns the printed rows by label, "total" included, for comparing runs
+    Map<String, Row> write(Duration elapsed, PrintStream out, Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        double seconds = elapsed.toNanos() / 1e9;
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-16s %9s %8s %9s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+
+        Map<String, Row> rows = new LinkedHashMap<>();
+        Histogram total = new Histogram(3);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            if (histogram.getTotalCount() == 0) {
+                continue;
+            }
+            total.add(histogram);
+            appendRow(table, operation.label, histogram, errorCount(operation), seconds);
+            rows.put(operation.label, row(histogram, seconds));
+            writeLog(outputDir.resolve(operation.label + ".hlog"), histogram);
+        }
+        appendRow(table, "total", total, failures.keySet().stream().mapToLong(this::errorCount).sum(), seconds);
+        rows.put("total", row(total, seconds));
+
+        for (Operation operation : Operation.values()) {
+            Map<Integer, LongAdder> byStatus = failures.get(operation);
+            if (!byStatus.isEmpty()) {
+                table.append(String.format("%s failures by status: %s%n", operation.label, new TreeMap<>(byStatus)));
+            }
+        }
+
+        out.print(table);
+        Files.writeString(outputDir.resolve("summary.txt"), table);
+        return rows;
+    }
+
+    private static Row row(Histogram histogram, double seconds) {
+        return new Row(histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                millis(histogram.getValueAtPercentile(99)));
+    }
+
+    private long errorCount(Operation operation) {
+        return failures.get(operation).values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static void appendRow(StringBuilder table, String label, Histogram histogram, long errors, double seconds) {
+        table.append(String.format("%-16s %9d %8d %9.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                label,
+                histogram.getTotalCount(),
+                errors,
+                histogram.getTotalCount() / seconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue())));
+    }
+
+    // HdrHistogram log format, readable by HistogramLogProcessor and the HdrHistogram plotter
+    private void writeLog(Path file, Histogram histogram) throws IOException {
+        try (PrintStream log = new PrintStream(Files.newOutputStream(file))) {
+            HistogramLogWriter writer = new HistogramLogWriter(log);
+            writer.outputLogFormatVersion();
+            writer.outputStartTime(startedMillis);
+            writer.outputLegend();
+            writer.outputIntervalHistogram(histogram);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
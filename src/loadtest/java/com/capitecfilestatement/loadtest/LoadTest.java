@@ -0,0 +1,189 @@
+package com.capitecfilestatement.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// End to end load test: boots the application against containerized Postgres and MinIO (or targets
+// --base-url), registers customers, drives the operation mix and reports throughput and latency per endpoint.
+//
+//   ./mvnw -Ploadtest test-compile exec:exec -Dloadtest.args="--concurrency=64 --duration-seconds=120"
+//
+// --rate=<requests per second> runs an open model: requests are due on a fixed schedule and latency is
+// measured from when each was due, so a stalled server is not hidden by workers that stop sending.
+//
+// --compare-threading runs the same load twice, against the application on platform threads and then on virtual
+// threads, each on fresh containers, and prints throughput and p99 per endpoint side by side.
+@Slf4j
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    private static final String VIRTUAL_THREADS = "spring.threads.virtual.enabled";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        System.exit(config.compareThreading() ? compareThreading(config) : runOnce(config).exitCode());
+    }
+
+    private record Outcome(int exitCode, Map<String, LatencyReport.Row> rows) {
+    }
+
+    private static Outcome runOnce(LoadTestConfig config) throws Exception {
+        try (TestEnvironment environment = TestEnvironment.start(config)) {
+            return run(config, environment.baseUrl());
+        }
+    }
+
+    private static int compareThreading(LoadTestConfig config) throws Exception {
+        if (config.externalTarget()) {
+            throw new IllegalArgumentException("--compare-threading boots the application itself, drop --base-url");
+        }
+
+        log.info("Run 1 of 2: platform threads");
+        Outcome platform = runOnce(config.withAppProperty(VIRTUAL_THREADS, "false", "platform"));
+        log.info("Run 2 of 2: virtual threads");
+        Outcome virtual = runOnce(config.withAppProperty(VIRTUAL_THREADS, "true", "virtual"));
+        if (platform.exitCode() != 0 || virtual.exitCode() != 0) {
+            return 1;
+        }
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-16s %12s %12s %8s %12s %12s %8s%n",
+                "operation", "platform/s", "virtual/s", "change", "platform p99", "virtual p99", "change"));
+        Set<String> labels = new LinkedHashSet<>(platform.rows().keySet());
+        labels.addAll(virtual.rows().keySet());
+        for (String label : labels) {
+            LatencyReport.Row before = platform.rows().get(label);
+            LatencyReport.Row after = virtual.rows().get(label);
+            if (before == null || after == null) {
+                continue;
+            }
+            table.append(String.format("%-16s %12.1f %12.1f %8s %10.2fms %10.2fms %8s%n",
+                    label,
+                    before.opsPerSecond(), after.opsPerSecond(), change(before.opsPerSecond(), after.opsPerSecond()),
+                    before.p99Millis(), after.p99Millis(), change(before.p99Millis(), after.p99Millis())));
+        }
+
+        System.out.print(table);
+        Files.createDirectories(config.outputDir());
+        Files.writeString(config.outputDir().resolve("threading-comparison.txt"), table);
+        return 0;
+    }
+
+    private static String change(double before, double after) {
+        return before == 0 ? "n/a" : String.format("%+.0f%%", (after - before) / before * 100);
+    }
+
+    private static Outcome run(LoadTestConfig config, String baseUrl) throws Exception {
+        ExecutorService clientExecutor = Executors.newCachedThreadPool();
+        ExecutorService workers = Executors.newFixedThreadPool(config.concurrency());
+        try {
+            LatencyReport report = new LatencyReport();
+            List<VirtualCustomer> customers = new CopyOnWriteArrayList<>();
+            Workload workload = new Workload(
+                    new ApiClient(baseUrl, clientExecutor), report, customers, pdf(config.fileSizeBytes()), config.mix());
+
+            setUp(config, workload, customers, workers);
+            if (customers.isEmpty()) {
+                log.error("No customer could register, is the application up at {}?", baseUrl);
+                return new Outcome(1, Map.of());
+            }
+            report.reset();
+
+            log.info("Running {} for {}s after {}s warmup: {} workers, {}, mix {}",
+                    config.openModel() ? "open model" : "closed model",
+                    config.duration().toSeconds(), config.warmup().toSeconds(), config.concurrency(),
+                    config.openModel() ? config.ratePerSecond() + " requests/s" : "no rate limit",
+                    config.mix());
+
+            AtomicBoolean stopped = new AtomicBoolean();
+            long started = System.nanoTime();
+            AtomicLong tickets = new AtomicLong();
+            long intervalNanos = config.openModel() ? (long) (TimeUnit.SECONDS.toNanos(1) / config.ratePerSecond()) : 0;
+
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < config.concurrency(); i++) {
+                running.add(workers.submit(() -> {
+                    while (!stopped.get()) {
+                        long due = System.nanoTime();
+                        if (config.openModel()) {
+                            due = started + tickets.getAndIncrement() * intervalNanos;
+                            long wait = due - System.nanoTime();
+                            if (wait > 0) {
+                                LockSupport.parkNanos(wait);
+                            }
+                            if (stopped.get()) {
+                                break;
+                            }
+                        }
+                        workload.run(workload.pick(), due);
+                    }
+                }));
+            }
+
+            TimeUnit.NANOSECONDS.sleep(config.warmup().toNanos());
+            report.reset();
+            long measured = System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(config.duration().toNanos());
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - measured);
+            stopped.set(true);
+
+            Map<String, LatencyReport.Row> rows = report.write(elapsed, System.out, config.outputDir());
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+            return new Outcome(0, rows);
+        } finally {
+            workers.shutdownNow();
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    // Customers register and upload their first statements before anything is measured
+    private static void setUp(
+            LoadTestConfig config,
+            Workload workload,
+            List<VirtualCustomer> customers,
+            ExecutorService workers) throws Exception {
+        List<Future<?>> pending = new ArrayList<>();
+        for (int i = 0; i < config.customers(); i++) {
+            pending.add(workers.submit(() -> {
+                VirtualCustomer customer = workload.register(System.nanoTime());
+                for (int j = 0; customer != null && j < config.initialStatements(); j++) {
+                    workload.upload(customer, System.nanoTime());
+                }
+            }));
+        }
+        for (Future<?> future : pending) {
+            future.get();
+        }
+        log.info("Registered {} customers with {} statements each", customers.size(), config.initialStatements());
+    }
+
+    // Same bytes every run, so runs are comparable; only the %PDF header matters to the service
+    private static byte[] pdf(int sizeBytes) {
+        byte[] content = new byte[Math.max(sizeBytes, 16)];
+        new SplittableRandom(42).nextBytes(content);
+        byte[] header = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, content, 0, header.length);
+        return content;
+    }
+}
@@ -0,0 +1,92 @@
+package com.capitecfilestatement.loadtest;
+
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Harness options, given as --name=value. Every --app.<property>=value is passed on to the booted application.
+record LoadTestConfig(
+        Duration duration,
+        Duration warmup,
+        int concurrency,
+        double ratePerSecond,
+        int customers,
+        int initialStatements,
+        int fileSizeBytes,
+        Map<Operation, Integer> mix,
+        String storage,
+        String baseUrl,
+        Path outputDir,
+        boolean compareThreading,
+        Map<String, String> appProperties) {
+
+    static final String DEFAULT_MIX = "login:5,upload:15,list:35,generate-link:20,download:15,delete:10";
+
+    static LoadTestConfig parse(String[] args) {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+
+        Map<String, String> appProperties = new LinkedHashMap<>();
+        for (String name : options.getPropertyNames()) {
+            if (name.startsWith("app.")) {
+                appProperties.put(name.substring("app.".length()), options.getProperty(name));
+            }
+        }
+
+        return new LoadTestConfig(
+                Duration.ofSeconds(longOption(options, "duration-seconds", 60)),
+                Duration.ofSeconds(longOption(options, "warmup-seconds", 15)),
+                (int) longOption(options, "concurrency", 32),
+                Double.parseDouble(option(options, "rate", "0")),
+                (int) longOption(options, "customers", 50),
+                (int) longOption(options, "initial-statements", 5),
+                (int) longOption(options, "file-size-bytes", 256 * 1024),
+                parseMix(option(options, "mix", DEFAULT_MIX)),
+                option(options, "storage", "minio"),
+                option(options, "base-url", ""),
+                Path.of(option(options, "output-dir", "target/loadtest")),
+                options.containsProperty("compare-threading"),
+                appProperties);
+    }
+
+    // The same run against an application booted with one more property, reported under its own directory
+    LoadTestConfig withAppProperty(String name, String value, String runName) {
+        Map<String, String> properties = new LinkedHashMap<>(appProperties);
+        properties.put(name, value);
+        return new LoadTestConfig(duration, warmup, concurrency, ratePerSecond, customers, initialStatements,
+                fileSizeBytes, mix, storage, baseUrl, outputDir.resolve(runName), compareThreading, properties);
+    }
+
+    // rate 0 runs a closed loop: every worker sends its next request as soon as the last one returns
+    boolean openModel() {
+        return ratePerSecond > 0;
+    }
+
+    boolean externalTarget() {
+        return !baseUrl.isBlank();
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Mix entries are operation:weight, got " + entry);
+            }
+            weights.put(Operation.fromName(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static long longOption(SimpleCommandLinePropertySource options, String name, long defaultValue) {
+        return Long.parseLong(option(options, name, String.valueOf(defaultValue)));
+    }
+}
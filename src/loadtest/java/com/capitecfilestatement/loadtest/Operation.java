@@ -0,0 +1,28 @@
+package com.capitecfilestatement.loadtest;
+
+import java.util.Arrays;
+
+enum Operation {
+    REGISTER("register"),
+    LOGIN("login"),
+    UPLOAD("upload"),
+    LIST("list"),
+    GENERATE_LINK("generate-link"),
+    DOWNLOAD("download"),
+    // Fetching the object behind the download redirect, reported apart from the API call itself
+    DOWNLOAD_OBJECT("download-object"),
+    DELETE("delete");
+
+    final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    static Operation fromName(String name) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.label.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation: " + name));
+    }
+}
@@ -0,0 +1,154 @@
+package com.capitecfilestatement.loadtest;
+
+import com.capitecfilestatement.CapitecFileStatementApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Postgres and MinIO in containers, the same images docker-compose runs, and the application booted in this
+// JVM against them. With --storage=local the application keeps objects on disk and MinIO is not started.
+@Slf4j
+final class TestEnvironment implements AutoCloseable {
+
+    private static final String POSTGRES_IMAGE = "postgres:16";
+    private static final String MINIO_IMAGE = "quay.io/minio/minio:RELEASE.2025-01-20T14-49-07Z";
+    private static final String BUCKET = "statements";
+
+    private final List<AutoCloseable> resources = new ArrayList<>();
+    private final String baseUrl;
+
+    private TestEnvironment(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    static TestEnvironment start(LoadTestConfig config) throws IOException {
+        if (config.externalTarget()) {
+            log.info("Targeting running application at {}", config.baseUrl());
+            return new TestEnvironment(config.baseUrl());
+        }
+
+        int port = freePort();
+        TestEnvironment environment = new TestEnvironment("http://localhost:" + port);
+        try {
+            environment.boot(config, port);
+        } catch (RuntimeException | IOException e) {
+            environment.close();
+            throw e;
+        }
+        return environment;
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    private void boot(LoadTestConfig config, int port) throws IOException {
+        PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(POSTGRES_IMAGE).withDatabaseName("statements_db");
+        resources.add(postgres);
+        postgres.start();
+
+        Path workDir = Files.createTempDirectory("statement-loadtest");
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", String.valueOf(port));
+        properties.put("spring.datasource.url", postgres.getJdbcUrl());
+        properties.put("spring.datasource.username", postgres.getUsername());
+        properties.put("spring.datasource.password", postgres.getPassword());
+        properties.put("security.jwt.secret-key", randomSecret());
+        // Every request comes from one address and a handful of customers, so the limits would measure themselves
+        properties.put("rate-limit.enabled", "false");
+        properties.put("audit.journal-file", workDir.resolve("audit-journal.jsonl").toString());
+        properties.put("statement-object-cache.directory", workDir.resolve("statement-cache").toString());
+        properties.put("logging.level.com.capitecfilestatement", "INFO");
+        properties.put("logging.level.org.flywaydb", "INFO");
+
+        if ("local".equals(config.storage())) {
+            properties.put("statement-storage.type", "local");
+            properties.put("statement-storage.local.directory", workDir.resolve("objects").toString());
+            properties.put("statement-storage.local.base-url", baseUrl);
+            // The S3 client bean is still created, it just never gets called
+            properties.put("aws.s3.region", "us-east-1");
+            properties.put("aws.s3.access-key", "unused");
+            properties.put("aws.s3.secret-key", "unused");
+        } else {
+            MinIOContainer minio = new MinIOContainer(
+                    DockerImageName.parse(MINIO_IMAGE).asCompatibleSubstituteFor("minio/minio"));
+            resources.add(minio);
+            minio.start();
+            createBucket(minio);
+
+            properties.put("statement-storage.type", "s3");
+            properties.put("aws.s3.bucket-name", BUCKET);
+            properties.put("aws.s3.region", "us-east-1");
+            properties.put("aws.s3.access-key", minio.getUserName());
+            properties.put("aws.s3.secret-key", minio.getPassword());
+            properties.put("aws.s3.endpoint", minio.getS3URL());
+        }
+        properties.putAll(config.appProperties());
+
+        // As command line arguments, so they take precedence over application.properties
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(CapitecFileStatementApplication.class)
+                .run(args);
+        resources.add(context);
+        log.info("Application started at {} with {} storage", baseUrl, config.storage());
+    }
+
+    private static void createBucket(MinIOContainer minio) {
+        try (S3Client s3 = S3Client.builder()
+                .endpointOverride(URI.create(minio.getS3URL()))
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(minio.getUserName(), minio.getPassword())))
+                .build()) {
+            s3.createBucket(request -> request.bucket(BUCKET));
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static String randomSecret() {
+        byte[] bytes = new byte[64];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    // The application goes down before the containers it talks to
+    @Override
+    public void close() {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            try {
+                resources.get(i).close();
+            } catch (Exception e) {
+                log.warn("Failed to stop {}", resources.get(i), e);
+            }
+        }
+        resources.clear();
+    }
+}
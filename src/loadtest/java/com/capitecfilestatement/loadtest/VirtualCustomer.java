@@ -0,0 +1,42 @@
+package com.capitecfilestatement.loadtest;
+
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// One simulated customer: its credentials, the statements it has uploaded and the links it has not used yet
+final class VirtualCustomer {
+
+    // The service allows five unused links per customer; the harness stays under that instead of measuring 400s
+    static final int MAX_PENDING_LINKS = 5;
+
+    record Link(UUID statementId, String downloadPath) {}
+
+    final String email;
+    final String password;
+    volatile String jwt;
+
+    // Oldest first: links are taken for the head, deletes come from the tail
+    final ConcurrentLinkedDeque<UUID> statements = new ConcurrentLinkedDeque<>();
+    final Queue<Link> links = new ConcurrentLinkedQueue<>();
+    final AtomicInteger pendingLinks = new AtomicInteger();
+
+    private final AtomicInteger periods = new AtomicInteger();
+
+    VirtualCustomer(String email, String password) {
+        this.email = email;
+        this.password = password;
+    }
+
+    // A new period per upload, so uploads never collide on the one-statement-per-period rule
+    String nextPeriod() {
+        int n = periods.getAndIncrement();
+        return "%04d-%02d".formatted(2000 + n / 12, n % 12 + 1);
+    }
+
+    boolean hasPendingLink(UUID statementId) {
+        return links.stream().anyMatch(link -> link.statementId().equals(statementId));
+    }
+}
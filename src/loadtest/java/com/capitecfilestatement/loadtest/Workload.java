@@ -0,0 +1,173 @@
+package com.capitecfilestatement.loadtest;
+
+import com.capitecfilestatement.dto.AuthResponse;
+import com.capitecfilestatement.dto.DownloadLinkResponse;
+import com.capitecfilestatement.dto.StatementUploadResponse;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+// Runs one operation of the mix for a random customer. An operation that has nothing to act on, such as a
+// download for a customer with no links, first does what the customer would have done to get there.
+final class Workload {
+
+    private static final String PASSWORD = "LoadTest#2024";
+
+    private final ApiClient client;
+    private final LatencyReport report;
+    private final List<VirtualCustomer> customers;
+    private final byte[] file;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    Workload(ApiClient client, LatencyReport report, List<VirtualCustomer> customers, byte[] file, Map<Operation, Integer> mix) {
+        this.client = client;
+        this.report = report;
+        this.customers = customers;
+        this.file = file;
+        this.operations = mix.keySet().toArray(Operation[]::new);
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    Operation pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    // intendedStartNanos is when the request was due; in an open model the wait for a free worker counts too
+    void run(Operation operation, long intendedStartNanos) {
+        switch (operation) {
+            case REGISTER -> register(intendedStartNanos);
+            case LOGIN -> login(randomCustomer(), intendedStartNanos);
+            case UPLOAD -> upload(randomCustomer(), intendedStartNanos);
+            case LIST -> list(randomCustomer(), intendedStartNanos);
+            case GENERATE_LINK -> generateLink(randomCustomer(), intendedStartNanos);
+            case DOWNLOAD, DOWNLOAD_OBJECT -> download(randomCustomer(), intendedStartNanos);
+            case DELETE -> delete(randomCustomer(), intendedStartNanos);
+        }
+    }
+
+    VirtualCustomer register(long intendedStartNanos) {
+        VirtualCustomer customer = new VirtualCustomer("loadtest-" + UUID.randomUUID() + "@example.com", PASSWORD);
+        ApiClient.Result<AuthResponse> result = timed(Operation.REGISTER, intendedStartNanos,
+                () -> client.register(customer.email, customer.password));
+        if (result.succeeded()) {
+            customer.jwt = result.body().getToken();
+            customers.add(customer);
+            return customer;
+        }
+        return null;
+    }
+
+    void login(VirtualCustomer customer, long intendedStartNanos) {
+        ApiClient.Result<AuthResponse> result = timed(Operation.LOGIN, intendedStartNanos,
+                () -> client.login(customer.email, customer.password));
+        if (result.succeeded()) {
+            customer.jwt = result.body().getToken();
+        }
+    }
+
+    void upload(VirtualCustomer customer, long intendedStartNanos) {
+        String period = customer.nextPeriod();
+        ApiClient.Result<StatementUploadResponse> result = timed(Operation.UPLOAD, intendedStartNanos,
+                () -> client.upload(customer.jwt, period, file));
+        if (result.succeeded()) {
+            customer.statements.addLast(result.body().getId());
+        }
+    }
+
+    private void list(VirtualCustomer customer, long intendedStartNanos) {
+        timed(Operation.LIST, intendedStartNanos, () -> client.list(customer.jwt, 50));
+    }
+
+    private void generateLink(VirtualCustomer customer, long intendedStartNanos) {
+        UUID statementId = customer.statements.peekFirst();
+        if (statementId == null) {
+            upload(customer, intendedStartNanos);
+            return;
+        }
+        if (customer.pendingLinks.get() >= VirtualCustomer.MAX_PENDING_LINKS) {
+            download(customer, intendedStartNanos);
+            return;
+        }
+
+        customer.pendingLinks.incrementAndGet();
+        ApiClient.Result<DownloadLinkResponse> result = timed(Operation.GENERATE_LINK, intendedStartNanos,
+                () -> client.generateLink(customer.jwt, statementId));
+        if (result.succeeded()) {
+            customer.links.add(new VirtualCustomer.Link(statementId, result.body().getDownloadUrl()));
+        } else {
+            customer.pendingLinks.decrementAndGet();
+        }
+    }
+
+    private void download(VirtualCustomer customer, long intendedStartNanos) {
+        VirtualCustomer.Link link = customer.links.poll();
+        if (link == null) {
+            // Links still being issued count as pending; list rather than go round between the two
+            if (customer.pendingLinks.get() < VirtualCustomer.MAX_PENDING_LINKS) {
+                generateLink(customer, intendedStartNanos);
+            } else {
+                list(customer, intendedStartNanos);
+            }
+            return;
+        }
+        customer.pendingLinks.decrementAndGet();
+
+        ApiClient.Result<Optional<String>> result = timed(Operation.DOWNLOAD, intendedStartNanos,
+                () -> client.download(link.downloadPath()));
+        // Redirect mode: the object itself comes from storage
+        if (result.succeeded() && result.body().isPresent()) {
+            timed(Operation.DOWNLOAD_OBJECT, System.nanoTime(), () -> client.fetch(result.body().get()));
+        }
+    }
+
+    private void delete(VirtualCustomer customer, long intendedStartNanos) {
+        UUID statementId = customer.statements.pollLast();
+        if (statementId == null) {
+            upload(customer, intendedStartNanos);
+            return;
+        }
+        // Deleting under an unused link would turn its download into an expected failure
+        if (customer.hasPendingLink(statementId)) {
+            customer.statements.addLast(statementId);
+            upload(customer, intendedStartNanos);
+            return;
+        }
+
+        ApiClient.Result<Void> result = timed(Operation.DELETE, intendedStartNanos,
+                () -> client.delete(customer.jwt, statementId));
+        if (!result.succeeded()) {
+            customer.statements.addLast(statementId);
+        }
+    }
+
+    private VirtualCustomer randomCustomer() {
+        return customers.get(ThreadLocalRandom.current().nextInt(customers.size()));
+    }
+
+    private <T> ApiClient.Result<T> timed(Operation operation, long startNanos, Supplier<ApiClient.Result<T>> call) {
+        ApiClient.Result<T> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = new ApiClient.Result<>(0, null);
+        }
+        report.record(operation, System.nanoTime() - startNanos, result.status(), result.succeeded());
+        return result;
+    }
+}
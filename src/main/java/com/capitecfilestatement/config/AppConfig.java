@@ -6,6 +6,7 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Value;
 import software.amazon.awssdk.services.s3.S3ClientBuilder;
 // import software.amazon.awssdk.services.s3.presigner.S3PresignerBuilder;
 import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class AppConfig {
@@ -37,10 +39,20 @@ public class AppConfig {
     @Value("${aws.s3.path-style-access:false}")
     private boolean pathStyleAccess;
 
+    @Value("${aws.s3.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${aws.s3.connection-acquisition-timeout-ms:10000}")
+    private long connectionAcquisitionTimeoutMillis;
+
     @Bean
     public S3Client s3Client() {
         S3ClientBuilder builder = S3Client.builder()
                 .region(Region.of(region))
+                // Explicit pool, so the storage connection limiter can be sized to the same number
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(maxConnections)
+                        .connectionAcquisitionTimeout(Duration.ofMillis(connectionAcquisitionTimeoutMillis)))
                 .credentialsProvider(StaticCredentialsProvider.create(
                         AwsBasicCredentials.create(accessKey, secretKey)));
 
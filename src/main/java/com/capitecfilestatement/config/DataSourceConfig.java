@@ -0,0 +1,121 @@
+package com.capitecfilestatement.config;
+
+import com.capitecfilestatement.service.ConcurrencyLimiter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Caps the database connections held by request threads at the Hikari pool minus reserved-connections. On
+// platform threads Tomcat's pool was the cap; on virtual threads there is none, and every request past the pool
+// would park in getConnection for up to its connection-timeout. The permit is taken when a connection is
+// acquired and given back when it is closed, so receiving an upload or streaming a download holds none.
+// Connections taken outside a request (scheduled jobs, the audit writer) skip the limiter and use the reserve.
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    public static BeanPostProcessor connectionLimitPostProcessor(
+            Environment environment,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        boolean enabled = environment.getProperty("concurrency-limits.enabled", Boolean.class,
+                environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!enabled || !(bean instanceof HikariDataSource hikari)) {
+                    return bean;
+                }
+                int reserved = environment.getProperty("concurrency-limits.database.reserved-connections", Integer.class, 4);
+                ConcurrencyLimiter limiter = new ConcurrencyLimiter(
+                        "database",
+                        hikari.getMaximumPoolSize() - reserved,
+                        environment.getProperty("concurrency-limits.database.max-wait-ms", Long.class, 2000L),
+                        environment.getProperty("concurrency-limits.retry-after-seconds", Integer.class, 1),
+                        "Server is busy, please retry shortly",
+                        meterRegistry.getObject());
+                return new ConnectionLimitedDataSource(hikari, limiter);
+            }
+        };
+    }
+
+    static final class ConnectionLimitedDataSource extends DelegatingDataSource {
+
+        private final ConcurrencyLimiter limiter;
+
+        ConnectionLimitedDataSource(DataSource target, ConcurrencyLimiter limiter) {
+            super(target);
+            this.limiter = limiter;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (RequestContextHolder.getRequestAttributes() == null) {
+                return super.getConnection();
+            }
+            limiter.acquire();
+            try {
+                return releasingOnClose(super.getConnection());
+            } catch (SQLException | RuntimeException e) {
+                limiter.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            if (RequestContextHolder.getRequestAttributes() == null) {
+                return super.getConnection(username, password);
+            }
+            limiter.acquire();
+            try {
+                return releasingOnClose(super.getConnection(username, password));
+            } catch (SQLException | RuntimeException e) {
+                limiter.release();
+                throw e;
+            }
+        }
+
+        private Connection releasingOnClose(Connection target) {
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionProxy.class.getClassLoader(),
+                    new Class<?>[] {ConnectionProxy.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "getTargetConnection":
+                                return target;
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        } finally {
+                            if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                                limiter.release();
+                            }
+                        }
+                    });
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.capitecfilestatement.config;
 import com.capitecfilestatement.security.JwtAuthenticationFilter;
+import com.capitecfilestatement.security.RateLimitFilter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,6 +26,7 @@ public class SecurityConfig {
     private final UserDetailsService userDetailsService;
     private final PasswordEncoder passwordEncoder;
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
 
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
@@ -49,15 +51,22 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers("/api/statements/download/**").permitAll()
+                        // Presigned local storage URLs carry their own HMAC signature
+                        .requestMatchers("/api/storage/local/**").permitAll()
                         .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .requestMatchers(HttpMethod.POST, "/api/statements/upload").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/api/statements/uploads/**").authenticated()
+                        .requestMatchers("/api/statements/upload-sessions/**").authenticated()
                         .requestMatchers(HttpMethod.GET, "/api/statements").authenticated()
                         .requestMatchers(HttpMethod.POST, "/api/statements/generate-link").authenticated()
+                        .requestMatchers(HttpMethod.POST, "/api/statements/bulk/**").authenticated()
                         .requestMatchers(HttpMethod.DELETE, "/api/statements/**").authenticated()
                         .anyRequest().authenticated()
                 )
                 .authenticationProvider(authenticationProvider())
-                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+                // Throttled requests are rejected before the principal lookup in the JWT filter
+                .addFilterBefore(rateLimitFilter, JwtAuthenticationFilter.class);
 
         return http.build();
     }
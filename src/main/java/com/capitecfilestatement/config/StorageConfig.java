@@ -0,0 +1,66 @@
+package com.capitecfilestatement.config;
+
+import com.capitecfilestatement.security.SigningKeys;
+import com.capitecfilestatement.service.ConcurrencyLimiter;
+import com.capitecfilestatement.storage.LocalStatementStorage;
+import com.capitecfilestatement.storage.S3StatementStorage;
+import com.capitecfilestatement.storage.StatementStorage;
+import com.capitecfilestatement.storage.TimedStatementStorage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "statement-storage.type", havingValue = "local")
+    public LocalStatementStorage localStatementStorage(
+            @Value("${statement-storage.local.directory:data/statement-storage}") String directory,
+            @Value("${statement-storage.local.base-url:}") String baseUrl,
+            @Value("${statement-storage.local.signing-key:${security.jwt.secret-key}}") String signingKey) throws IOException {
+        return new LocalStatementStorage(Path.of(directory), baseUrl, SigningKeys.derive(signingKey, "statement-storage.local"));
+    }
+
+    // The one StatementStorage the application injects: whichever backend is configured, wrapped with timers.
+    // With concurrency limits on, S3 requests are also capped at the S3 client's connection pool
+    @Bean
+    @Primary
+    public StatementStorage statementStorage(
+            ObjectProvider<LocalStatementStorage> localStatementStorage,
+            ObjectProvider<S3Client> s3Client,
+            ObjectProvider<S3Presigner> s3Presigner,
+            MeterRegistry meterRegistry,
+            @Value("${aws.s3.bucket-name:}") String bucketName,
+            @Value("${aws.s3.multipart.part-size-bytes:5242880}") int partSizeBytes,
+            @Value("${concurrency-limits.enabled:${spring.threads.virtual.enabled:false}}") boolean concurrencyLimitsEnabled,
+            @Value("${aws.s3.max-connections:50}") int maxConnections,
+            @Value("${concurrency-limits.storage.max-wait-ms:5000}") long maxWaitMillis,
+            @Value("${concurrency-limits.retry-after-seconds:1}") int retryAfterSeconds) {
+
+        LocalStatementStorage local = localStatementStorage.getIfAvailable();
+        if (local != null) {
+            return new TimedStatementStorage(local, meterRegistry, "local");
+        }
+
+        ConcurrencyLimiter connectionLimiter = concurrencyLimitsEnabled
+                ? new ConcurrencyLimiter("storage", maxConnections, maxWaitMillis, retryAfterSeconds,
+                        "Storage is busy, please retry shortly", meterRegistry)
+                : null;
+
+        return new TimedStatementStorage(
+                new S3StatementStorage(
+                        s3Client.getObject(), s3Presigner.getObject(), bucketName, partSizeBytes, connectionLimiter),
+                meterRegistry,
+                "s3");
+    }
+}
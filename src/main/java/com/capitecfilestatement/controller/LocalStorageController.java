@@ -0,0 +1,71 @@
+package com.capitecfilestatement.controller;
+import com.capitecfilestatement.exception.InvalidTokenException;
+import com.capitecfilestatement.exception.ValidationException;
+import com.capitecfilestatement.storage.LocalStatementStorage;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Serves the presigned URLs handed out by LocalStatementStorage; the signature is the only credential
+@Slf4j
+@RestController
+@RequestMapping(LocalStatementStorage.OBJECTS_PATH)
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "statement-storage.type", havingValue = "local")
+public class LocalStorageController {
+
+    private final LocalStatementStorage localStatementStorage;
+
+    @GetMapping
+    public void download(
+            @RequestParam String key,
+            @RequestParam String fileName,
+            @RequestParam String contentType,
+            @RequestParam long expires,
+            @RequestParam String signature,
+            HttpServletResponse response) throws IOException {
+
+        if (!localStatementStorage.verifyDownload(key, fileName, contentType, expires, signature)) {
+            throw new InvalidTokenException("Invalid or expired storage URL");
+        }
+
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+        localStatementStorage.transferTo(key, response.getOutputStream());
+    }
+
+    @PutMapping
+    public ResponseEntity<Void> upload(
+            @RequestParam String key,
+            @RequestParam String contentType,
+            @RequestParam long size,
+            @RequestParam String checksumSha256,
+            @RequestParam long expires,
+            @RequestParam String signature,
+            HttpServletRequest request) throws IOException {
+
+        if (!localStatementStorage.verifyUpload(key, contentType, size, checksumSha256, expires, signature)) {
+            throw new InvalidTokenException("Invalid or expired storage URL");
+        }
+
+        if (!contentType.equals(request.getContentType())) {
+            throw new ValidationException("Content-Type does not match the signed upload");
+        }
+
+        try (InputStream in = request.getInputStream()) {
+            localStatementStorage.acceptUpload(key, in, contentType, size, checksumSha256);
+        }
+
+        return ResponseEntity.ok().build();
+    }
+}
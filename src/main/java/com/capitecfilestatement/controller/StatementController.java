@@ -1,10 +1,22 @@
 package com.capitecfilestatement.controller;
 import com.capitecfilestatement.dto.*;
+import com.capitecfilestatement.exception.GlobalExceptionHandler;
+import com.capitecfilestatement.security.ClientIpResolver;
+import com.capitecfilestatement.service.IdempotencyService;
+import com.capitecfilestatement.service.StatementListCache;
 import com.capitecfilestatement.service.StatementService;
+import com.capitecfilestatement.service.UploadAdmissionController;
+import com.capitecfilestatement.service.UploadSessionService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,7 +24,6 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.view.RedirectView;
 
 import java.io.IOException;
 import java.util.List;
@@ -27,32 +38,198 @@ import com.capitecfilestatement.dto.GenerateDownloadLinkRequest;
 @RequiredArgsConstructor
 public class StatementController {
 
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final StatementService statementService;
+    private final StatementListCache statementListCache;
+    private final UploadSessionService uploadSessionService;
+    private final UploadAdmissionController uploadAdmissionController;
+    private final IdempotencyService idempotencyService;
+
+    public enum DownloadServingMode { REDIRECT, PROXY }
+
+    @Value("${download-link.serving-mode:REDIRECT}")
+    private DownloadServingMode downloadServingMode;
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<StatementUploadResponse> uploadStatement(
             @RequestParam("file") MultipartFile file,
             @RequestParam("statementPeriod") String statementPeriod,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
             @AuthenticationPrincipal UserDetails userDetails,
             HttpServletRequest request) throws IOException {
 
         UUID customerId = UUID.fromString(userDetails.getUsername());
         String ipAddress = getClientIpAddress(request);
 
-        StatementUploadResponse response = statementService.uploadStatement(
-                customerId, file, statementPeriod, ipAddress);
+        if (idempotencyKey == null) {
+            StatementUploadResponse response = admitAndUpload(customerId, file, statementPeriod, ipAddress);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        }
+
+        // Retries with the same key get the first response back instead of a second upload
+        String fingerprint = IdempotencyService.fingerprint(
+                "upload", statementPeriod, file.getOriginalFilename(), file.getContentType(),
+                String.valueOf(file.getSize()));
+        IdempotencyService.Result<StatementUploadResponse> result = idempotencyService.execute(
+                customerId, idempotencyKey, fingerprint, StatementUploadResponse.class,
+                () -> admitAndUpload(customerId, file, statementPeriod, ipAddress));
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.body());
+    }
+
+    @PostMapping(value = "/bulk/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<BulkOperationResponse<StatementUploadResponse>> uploadStatements(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("statementPeriods") List<String> statementPeriods,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+        String ipAddress = getClientIpAddress(request);
+
+        List<BulkItemResult<StatementUploadResponse>> results = statementService.uploadStatements(
+                customerId, files, statementPeriods, ipAddress);
+
+        return ResponseEntity.ok(BulkOperationResponse.of(results));
+    }
+
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadReservationResponse> reserveUpload(
+            @Valid @RequestBody UploadReservationRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+
+        UploadReservationResponse response = statementService.reserveUpload(customerId, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @PostMapping("/uploads/{reservationId}/finalize")
+    public ResponseEntity<StatementUploadResponse> finalizeUpload(
+            @PathVariable UUID reservationId,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+        String ipAddress = getClientIpAddress(request);
+
+        StatementUploadResponse response = statementService.finalizeUpload(
+                customerId, reservationId, ipAddress);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping("/upload-sessions")
+    public ResponseEntity<UploadSessionResponse> createUploadSession(
+            @Valid @RequestBody UploadSessionRequest request,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+
+        UploadSessionResponse response = uploadSessionService.create(customerId, request);
+
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(GlobalExceptionHandler.UPLOAD_OFFSET_HEADER, String.valueOf(response.getReceivedBytes()))
+                .body(response);
+    }
+
+    // Raw chunk bytes; Upload-Offset must equal the session's receivedBytes, a mismatch answers 409 with the
+    // offset to resume from
+    @PutMapping(value = "/upload-sessions/{sessionId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<UploadSessionResponse> uploadChunk(
+            @PathVariable UUID sessionId,
+            @RequestHeader(GlobalExceptionHandler.UPLOAD_OFFSET_HEADER) long offset,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) throws IOException {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+
+        UploadSessionResponse response = uploadSessionService.appendChunk(
+                customerId, sessionId, offset, request.getInputStream());
+
+        return ResponseEntity.ok()
+                .header(GlobalExceptionHandler.UPLOAD_OFFSET_HEADER, String.valueOf(response.getReceivedBytes()))
+                .body(response);
+    }
+
+    @GetMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<UploadSessionResponse> getUploadSession(
+            @PathVariable UUID sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+
+        UploadSessionResponse response = uploadSessionService.getStatus(customerId, sessionId);
+
+        return ResponseEntity.ok()
+                .header(GlobalExceptionHandler.UPLOAD_OFFSET_HEADER, String.valueOf(response.getReceivedBytes()))
+                .cacheControl(CacheControl.noStore())
+                .body(response);
+    }
+
+    @PostMapping("/upload-sessions/{sessionId}/complete")
+    public ResponseEntity<StatementUploadResponse> completeUploadSession(
+            @PathVariable UUID sessionId,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest request) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+        String ipAddress = getClientIpAddress(request);
+
+        StatementUploadResponse response = uploadSessionService.complete(customerId, sessionId, ipAddress);
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
+    @DeleteMapping("/upload-sessions/{sessionId}")
+    public ResponseEntity<Void> abortUploadSession(
+            @PathVariable UUID sessionId,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+
+        uploadSessionService.abort(customerId, sessionId);
+
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping
-    public ResponseEntity<List<StatementListResponse>> getStatements(
+    public ResponseEntity<byte[]> getStatements(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "fromPeriod", required = false) String fromPeriod,
+            @RequestParam(value = "toPeriod", required = false) String toPeriod,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
             @AuthenticationPrincipal UserDetails userDetails) {
 
         UUID customerId = UUID.fromString(userDetails.getUsername());
-        List<StatementListResponse> statements = statementService.getCustomerStatements(customerId);
+        StatementListCache.Listing listing = statementListCache.getListing(
+                customerId, cursor, fromPeriod, toPeriod, limit, ifNoneMatch,
+                () -> statementService.getCustomerStatements(customerId, cursor, fromPeriod, toPeriod, limit));
+
+        if (StatementListCache.matches(ifNoneMatch, listing.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(listing.eTag())
+                    .lastModified(listing.lastModified())
+                    .build();
+        }
 
-        return ResponseEntity.ok(statements);
+        // The body stays a plain array for existing clients, the next page is advertised in a header
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(listing.eTag())
+                .lastModified(listing.lastModified())
+                .cacheControl(CacheControl.noCache().cachePrivate());
+        if (listing.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, listing.nextCursor());
+        }
+        return response.body(listing.body());
     }
 
     @PostMapping("/generate-link")
@@ -70,15 +247,100 @@ public class StatementController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/bulk/generate-link")
+    public ResponseEntity<BulkOperationResponse<DownloadLinkResponse>> generateDownloadLinks(
+            @Valid @RequestBody BulkStatementIdsRequest request,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest httpRequest) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+        String ipAddress = getClientIpAddress(httpRequest);
+
+        List<BulkItemResult<DownloadLinkResponse>> results = statementService.generateDownloadLinks(
+                customerId, request.getStatementIds(), ipAddress);
+
+        return ResponseEntity.ok(BulkOperationResponse.of(results));
+    }
+
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<BulkOperationResponse<Void>> deleteStatements(
+            @Valid @RequestBody BulkStatementIdsRequest request,
+            @AuthenticationPrincipal UserDetails userDetails,
+            HttpServletRequest httpRequest) {
+
+        UUID customerId = UUID.fromString(userDetails.getUsername());
+        String ipAddress = getClientIpAddress(httpRequest);
+
+        List<BulkItemResult<Void>> results = statementService.deleteStatements(
+                customerId, request.getStatementIds(), ipAddress);
+
+        return ResponseEntity.ok(BulkOperationResponse.of(results));
+    }
+
     @GetMapping("/download/{token}")
-    public RedirectView downloadStatement(
+    public void downloadStatement(
             @PathVariable String token,
-            HttpServletRequest request) {
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
         String ipAddress = getClientIpAddress(request);
-        String presignedUrl = statementService.downloadStatement(token, ipAddress);
 
-        return new RedirectView(presignedUrl);
+        if (downloadServingMode == DownloadServingMode.REDIRECT) {
+            response.sendRedirect(statementService.downloadStatement(token, ipAddress));
+            return;
+        }
+
+        // Revalidation does not consume the link
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            StatementService.DownloadTarget current = statementService.peekDownload(token);
+            if (StatementListCache.matches(ifNoneMatch, eTagOf(current))) {
+                response.setStatus(HttpStatus.NOT_MODIFIED.value());
+                response.setHeader(HttpHeaders.ETAG, eTagOf(current));
+                return;
+            }
+        }
+
+        // The range is checked against the object before anything is consumed, so a 416 leaves the link usable
+        List<HttpRange> ranges = parseRanges(request.getHeader(HttpHeaders.RANGE));
+        long start = 0;
+        long end = -1;
+        boolean partial = false;
+        // Multipart byteranges responses are not supported, several ranges are answered with the whole file
+        if (ranges.size() == 1) {
+            long length = statementService.peekDownload(token).fileSizeBytes();
+            try {
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+                partial = true;
+            } catch (IllegalArgumentException e) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                return;
+            }
+        }
+
+        // Only a range past byte 0 may resume a consumed link; anything else is a new download and consumes it
+        StatementService.DownloadTarget target = statementService.openProxyDownload(
+                token, ipAddress, partial && start > 0);
+
+        long length = target.fileSizeBytes();
+        if (!partial) {
+            end = length - 1;
+        }
+
+        response.setStatus(partial ? HttpStatus.PARTIAL_CONTENT.value() : HttpStatus.OK.value());
+        response.setContentType(target.contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(target.fileName()).build().toString());
+        response.setHeader(HttpHeaders.ETAG, eTagOf(target));
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentLengthLong(end - start + 1);
+        if (partial) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        statementService.streamObject(target, start, end, response.getOutputStream());
     }
 
     @DeleteMapping("/{statementId}")
@@ -95,17 +357,35 @@ public class StatementController {
         return ResponseEntity.noContent().build();
     }
 
-    private String getClientIpAddress(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
+    // Admitted before the service opens its transaction, so a queued upload does not hold a connection
+    private StatementUploadResponse admitAndUpload(
+            UUID customerId,
+            MultipartFile file,
+            String statementPeriod,
+            String ipAddress) throws IOException {
+        try (UploadAdmissionController.Permit permit = uploadAdmissionController.admitUpload(file.getSize())) {
+            return statementService.uploadStatement(customerId, file, statementPeriod, ipAddress);
         }
+    }
+
+    // The stored SHA-256 is a strong validator for the object bytes
+    private static String eTagOf(StatementService.DownloadTarget target) {
+        return "\"" + target.checksumSha256() + "\"";
+    }
 
-        String xRealIp = request.getHeader("X-Real-IP");
-        if (xRealIp != null && !xRealIp.isEmpty()) {
-            return xRealIp;
+    private static List<HttpRange> parseRanges(String rangeHeader) {
+        if (rangeHeader == null) {
+            return List.of();
         }
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // A malformed Range header is ignored, as RFC 9110 requires
+            return List.of();
+        }
+    }
 
-        return request.getRemoteAddr();
+    private String getClientIpAddress(HttpServletRequest request) {
+        return ClientIpResolver.resolve(request);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.capitecfilestatement.dto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.UUID;
+
+// Outcome of one item of a bulk request, in request order; index points back at the submitted item
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkItemResult<T> {
+    public enum Status { SUCCEEDED, FAILED }
+
+    private int index;
+    private Status status;
+    private UUID statementId;
+    private T result;
+    private String error;
+
+    public static <T> BulkItemResult<T> succeeded(int index, UUID statementId, T result) {
+        return new BulkItemResult<>(index, Status.SUCCEEDED, statementId, result, null);
+    }
+
+    public static <T> BulkItemResult<T> failed(int index, UUID statementId, String error) {
+        return new BulkItemResult<>(index, Status.FAILED, statementId, null, error);
+    }
+}
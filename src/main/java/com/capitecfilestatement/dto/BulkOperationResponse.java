@@ -0,0 +1,20 @@
+package com.capitecfilestatement.dto;
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class BulkOperationResponse<T> {
+    private int succeeded;
+    private int failed;
+    private List<BulkItemResult<T>> results;
+
+    public static <T> BulkOperationResponse<T> of(List<BulkItemResult<T>> results) {
+        BulkOperationResponse<T> response = new BulkOperationResponse<>();
+        response.setResults(results);
+        response.setSucceeded((int) results.stream()
+                .filter(result -> result.getStatus() == BulkItemResult.Status.SUCCEEDED)
+                .count());
+        response.setFailed(results.size() - response.getSucceeded());
+        return response;
+    }
+}
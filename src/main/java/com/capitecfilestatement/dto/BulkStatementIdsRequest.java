@@ -0,0 +1,12 @@
+package com.capitecfilestatement.dto;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class BulkStatementIdsRequest {
+    @NotEmpty(message = "At least one statement ID is required")
+    @Size(max = 500, message = "At most 500 statements per request")
+    private List<@NotNull UUID> statementIds;
+}
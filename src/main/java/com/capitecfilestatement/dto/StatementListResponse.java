@@ -1,10 +1,14 @@
 package com.capitecfilestatement.dto;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import java.util.UUID;
 import java.time.LocalDateTime;
 
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class StatementListResponse {
     private UUID id;
     private String fileName;
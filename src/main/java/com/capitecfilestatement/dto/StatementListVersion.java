@@ -0,0 +1,4 @@
+package com.capitecfilestatement.dto;
+import java.time.LocalDateTime;
+
+public record StatementListVersion(Long statementCount, LocalDateTime lastUpdatedAt) {}
@@ -0,0 +1,11 @@
+package com.capitecfilestatement.dto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class StatementPage {
+    private List<StatementListResponse> items;
+    private String nextCursor; // null on the last page
+}
@@ -0,0 +1,22 @@
+package com.capitecfilestatement.dto;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+@Data
+public class UploadReservationRequest {
+    @NotBlank
+    private String statementPeriod;
+
+    @NotBlank
+    private String fileName;
+
+    @NotBlank
+    private String contentType;
+
+    @NotNull
+    @Positive
+    private Long fileSizeBytes;
+
+    @NotBlank(message = "Base64 encoded SHA-256 checksum is required")
+    private String checksumSha256;
+}
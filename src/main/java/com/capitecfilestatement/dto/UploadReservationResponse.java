@@ -0,0 +1,13 @@
+package com.capitecfilestatement.dto;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+public class UploadReservationResponse {
+    private UUID reservationId;
+    private String uploadUrl;
+    private Map<String, String> requiredHeaders;
+    private LocalDateTime expiresAt;
+}
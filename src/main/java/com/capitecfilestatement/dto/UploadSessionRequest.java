@@ -0,0 +1,19 @@
+package com.capitecfilestatement.dto;
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+@Data
+public class UploadSessionRequest {
+    @NotBlank
+    private String statementPeriod;
+
+    @NotBlank
+    private String fileName;
+
+    @NotBlank
+    private String contentType;
+
+    @NotNull
+    @Positive
+    private Long fileSizeBytes;
+}
@@ -0,0 +1,14 @@
+package com.capitecfilestatement.dto;
+import lombok.Data;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class UploadSessionResponse {
+    private UUID sessionId;
+    private String statementPeriod;
+    private Long fileSizeBytes;
+    private Integer chunkSizeBytes;
+    private Long receivedBytes; // Offset the next chunk must start at
+    private LocalDateTime expiresAt;
+}
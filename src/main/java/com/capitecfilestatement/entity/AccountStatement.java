@@ -9,7 +9,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "account_statements", indexes = {
-        @Index(name = "idx_statement_customer", columnList = "customer_id"),
+        @Index(name = "idx_statement_customer_period_id", columnList = "customer_id, statement_period DESC, id DESC"),
         @Index(name = "idx_statement_period", columnList = "statement_period"),
         @Index(name = "idx_statement_s3_key", columnList = "s3_key")
 })
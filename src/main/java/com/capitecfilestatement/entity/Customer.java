@@ -1,5 +1,6 @@
 package com.capitecfilestatement.entity;
 
+import com.capitecfilestatement.security.CustomerPrincipalInvalidator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +10,7 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(CustomerPrincipalInvalidator.class)
 @Table(name = "customers", indexes = {
         @Index(name = "idx_customer_email", columnList = "email")
 })
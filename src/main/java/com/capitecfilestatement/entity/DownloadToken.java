@@ -42,6 +42,13 @@ public class DownloadToken {
 
     private LocalDateTime usedAt;
 
+    // Client that consumed the link, the only one allowed to resume it
+    @Column(length = 45)
+    private String usedIp;
+
+    @Column(nullable = false)
+    private Integer resumeCount = 0;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
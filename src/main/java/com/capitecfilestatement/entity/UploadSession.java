@@ -0,0 +1,77 @@
+package com.capitecfilestatement.entity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_session_expires", columnList = "expires_at")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id", nullable = false)
+    private Customer customer;
+
+    @Column(nullable = false)
+    private String statementPeriod;
+
+    @Column(nullable = false, unique = true)
+    private String s3Key;
+
+    @Column(nullable = false, length = 1024)
+    private String storageUploadId; // Multipart upload id in storage
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long fileSizeBytes;
+
+    @Column(nullable = false)
+    private Integer chunkSizeBytes;
+
+    @Column(nullable = false)
+    private Long receivedBytes;
+
+    @ElementCollection
+    @CollectionTable(name = "upload_session_parts", joinColumns = @JoinColumn(name = "session_id"))
+    @OrderBy("partNumber")
+    @Builder.Default
+    private List<UploadSessionPart> parts = new ArrayList<>();
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt; // Pushed forward by every accepted chunk
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Two requests appending at the same offset cannot both commit
+    @Version
+    private Long version;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (receivedBytes == null) {
+            receivedBytes = 0L;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.capitecfilestatement.entity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionPart {
+
+    @Column(nullable = false)
+    private Integer partNumber;
+
+    @Column(nullable = false)
+    private String eTag;
+
+    @Column(nullable = false)
+    private Integer sizeBytes;
+}
@@ -0,0 +1,16 @@
+package com.capitecfilestatement.exception;
+
+// A capacity limit on this node is exhausted; answered with 503 and Retry-After so the client backs off
+public class ServiceBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public ServiceBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,9 @@
+package com.capitecfilestatement.exception;
+
+// The node has no upload memory left to admit the request; the client should retry after retryAfterSeconds
+public class UploadCapacityExceededException extends ServiceBusyException {
+
+    public UploadCapacityExceededException(String message, int retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
@@ -0,0 +1,16 @@
+package com.capitecfilestatement.exception;
+
+// A chunk that does not start where the session left off; carries the offset the client should resume from
+public class UploadOffsetMismatchException extends RuntimeException {
+
+    private final long currentOffset;
+
+    public UploadOffsetMismatchException(String message, long currentOffset) {
+        super(message);
+        this.currentOffset = currentOffset;
+    }
+
+    public long getCurrentOffset() {
+        return currentOffset;
+    }
+}
@@ -1,10 +1,14 @@
 package com.capitecfilestatement.repository;
+import com.capitecfilestatement.dto.StatementListResponse;
+import com.capitecfilestatement.dto.StatementListVersion;
 import com.capitecfilestatement.entity.AccountStatement;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -12,10 +16,42 @@ import java.util.UUID;
 @Repository
 public interface AccountStatementRepository extends JpaRepository<AccountStatement, UUID> {
 
-    List<AccountStatement> findByCustomerIdOrderByStatementPeriodDesc(UUID customerId);
+    @Query("SELECT new com.capitecfilestatement.dto.StatementListResponse(" +
+            "s.id, s.fileName, s.statementPeriod, s.fileSizeBytes, s.createdAt) " +
+            "FROM AccountStatement s WHERE s.customer.id = :customerId " +
+            "AND (:fromPeriod IS NULL OR s.statementPeriod >= :fromPeriod) " +
+            "AND (:toPeriod IS NULL OR s.statementPeriod <= :toPeriod) " +
+            "ORDER BY s.statementPeriod DESC, s.id DESC")
+    List<StatementListResponse> findFirstPage(
+            @Param("customerId") UUID customerId,
+            @Param("fromPeriod") String fromPeriod,
+            @Param("toPeriod") String toPeriod,
+            Pageable pageable
+    );
+
+    @Query("SELECT new com.capitecfilestatement.dto.StatementListResponse(" +
+            "s.id, s.fileName, s.statementPeriod, s.fileSizeBytes, s.createdAt) " +
+            "FROM AccountStatement s WHERE s.customer.id = :customerId " +
+            "AND (:fromPeriod IS NULL OR s.statementPeriod >= :fromPeriod) " +
+            "AND (:toPeriod IS NULL OR s.statementPeriod <= :toPeriod) " +
+            "AND (s.statementPeriod < :cursorPeriod " +
+            "OR (s.statementPeriod = :cursorPeriod AND s.id < :cursorId)) " +
+            "ORDER BY s.statementPeriod DESC, s.id DESC")
+    List<StatementListResponse> findPageAfter(
+            @Param("customerId") UUID customerId,
+            @Param("fromPeriod") String fromPeriod,
+            @Param("toPeriod") String toPeriod,
+            @Param("cursorPeriod") String cursorPeriod,
+            @Param("cursorId") UUID cursorId,
+            Pageable pageable
+    );
 
     Optional<AccountStatement> findByIdAndCustomerId(UUID id, UUID customerId);
 
+    @Query("SELECT new com.capitecfilestatement.dto.StatementListVersion(COUNT(s), MAX(s.updatedAt)) " +
+            "FROM AccountStatement s WHERE s.customer.id = :customerId")
+    StatementListVersion findListVersion(@Param("customerId") UUID customerId);
+
     @Query("SELECT s FROM AccountStatement s WHERE s.customer.id = :customerId " +
             "AND s.statementPeriod = :period")
     Optional<AccountStatement> findByCustomerIdAndPeriod(
@@ -24,5 +60,20 @@ public interface AccountStatementRepository extends JpaRepository<AccountStateme
     );
 
     boolean existsByS3Key(String s3Key);
+
+    // Byte order (COLLATE "C") matches the order storage lists keys in, so the two can be merged in one pass
+    @Query(value = "SELECT s3_key FROM account_statements " +
+            "WHERE customer_id = :customerId ORDER BY s3_key COLLATE \"C\"",
+            nativeQuery = true)
+    List<String> findStoredKeys(@Param("customerId") UUID customerId);
+
+    List<AccountStatement> findAllByIdInAndCustomerId(Collection<UUID> ids, UUID customerId);
+
+    @Query("SELECT s.statementPeriod FROM AccountStatement s WHERE s.customer.id = :customerId " +
+            "AND s.statementPeriod IN :periods")
+    List<String> findExistingPeriods(
+            @Param("customerId") UUID customerId,
+            @Param("periods") Collection<String> periods
+    );
 }
 
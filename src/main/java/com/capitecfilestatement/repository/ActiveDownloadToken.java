@@ -0,0 +1,11 @@
+package com.capitecfilestatement.repository;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Projection used to seed ActiveLinkTracker at startup and to recount a customer at the link limit
+public interface ActiveDownloadToken {
+    UUID getCustomerId();
+    UUID getStatementId();
+    String getToken();
+    LocalDateTime getExpiresAt();
+}
@@ -6,6 +6,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import com.capitecfilestatement.entity.DownloadToken;
@@ -14,6 +15,10 @@ import com.capitecfilestatement.entity.DownloadToken;
 @Repository
 public interface DownloadTokenRepository extends JpaRepository<DownloadToken, UUID> {
 
+    String TARGET_COLUMNS = "s.id AS \"statementId\", dt.customer_id AS \"customerId\", " +
+            "s.s3_key AS \"s3Key\", s.file_name AS \"fileName\", s.content_type AS \"contentType\", " +
+            "s.checksum_sha256 AS \"checksumSha256\", s.file_size_bytes AS \"fileSizeBytes\"";
+
     Optional<DownloadToken> findByToken(String token);
 
     @Query("SELECT dt FROM DownloadToken dt " +
@@ -25,9 +30,67 @@ public interface DownloadTokenRepository extends JpaRepository<DownloadToken, UU
             @Param("now") LocalDateTime now
     );
 
+    // Marks the token used and returns the statement fields in one round trip. The used = false predicate is
+    // re-checked under the row lock, so of two concurrent requests with the same token exactly one gets a row.
+    @Query(value = "UPDATE download_tokens dt SET used = true, used_at = :now, used_ip = :ipAddress " +
+            "FROM account_statements s " +
+            "WHERE dt.token = :token " +
+            "AND dt.used = false " +
+            "AND dt.expires_at > :now " +
+            "AND s.id = dt.statement_id " +
+            "RETURNING " + TARGET_COLUMNS,
+            nativeQuery = true)
+    Optional<DownloadTokenTarget> consumeValidToken(
+            @Param("token") String token,
+            @Param("now") LocalDateTime now,
+            @Param("ipAddress") String ipAddress
+    );
+
+    // Unexpired token regardless of use, for ETag revalidation
+    @Query(value = "SELECT " + TARGET_COLUMNS + " " +
+            "FROM download_tokens dt " +
+            "JOIN account_statements s ON s.id = dt.statement_id " +
+            "WHERE dt.token = :token " +
+            "AND dt.expires_at > :now",
+            nativeQuery = true)
+    Optional<DownloadTokenTarget> findUnexpiredToken(
+            @Param("token") String token,
+            @Param("now") LocalDateTime now
+    );
+
+    // Counts one resume of a consumed, unexpired token by the client that consumed it. Like consumeValidToken the
+    // predicates are re-checked under the row lock, so concurrent resumes cannot go past maxResumes
+    @Query(value = "UPDATE download_tokens dt SET resume_count = dt.resume_count + 1 " +
+            "FROM account_statements s " +
+            "WHERE dt.token = :token " +
+            "AND dt.used = true " +
+            "AND dt.expires_at > :now " +
+            "AND dt.used_ip = :ipAddress " +
+            "AND dt.resume_count < :maxResumes " +
+            "AND s.id = dt.statement_id " +
+            "RETURNING " + TARGET_COLUMNS,
+            nativeQuery = true)
+    Optional<DownloadTokenTarget> resumeConsumedToken(
+            @Param("token") String token,
+            @Param("now") LocalDateTime now,
+            @Param("ipAddress") String ipAddress,
+            @Param("maxResumes") int maxResumes
+    );
+
+    // One bounded batch, oldest first along idx_token_expires. SKIP LOCKED steps around rows a download is
+    // consuming right now instead of waiting on them
     @Modifying
-    @Query("DELETE FROM DownloadToken dt WHERE dt.expiresAt < :cutoff")
-    int deleteExpiredTokens(@Param("cutoff") LocalDateTime cutoff);
+    @Query(value = "DELETE FROM download_tokens WHERE id IN (" +
+            "SELECT id FROM download_tokens WHERE expires_at < :cutoff " +
+            "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED)",
+            nativeQuery = true)
+    int deleteExpiredBatch(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("limit") int limit
+    );
+
+    @Query("SELECT MIN(dt.expiresAt) FROM DownloadToken dt")
+    LocalDateTime findOldestExpiry();
 
     @Query("SELECT COUNT(dt) FROM DownloadToken dt " +
             "WHERE dt.customer.id = :customerId " +
@@ -37,4 +100,22 @@ public interface DownloadTokenRepository extends JpaRepository<DownloadToken, UU
             @Param("customerId") UUID customerId,
             @Param("now") LocalDateTime now
     );
+
+    @Query("SELECT dt.customer.id AS customerId, dt.statement.id AS statementId, dt.token AS token, " +
+            "dt.expiresAt AS expiresAt " +
+            "FROM DownloadToken dt " +
+            "WHERE dt.used = false " +
+            "AND dt.expiresAt > :now")
+    List<ActiveDownloadToken> findActiveTokens(@Param("now") LocalDateTime now);
+
+    @Query("SELECT dt.customer.id AS customerId, dt.statement.id AS statementId, dt.token AS token, " +
+            "dt.expiresAt AS expiresAt " +
+            "FROM DownloadToken dt " +
+            "WHERE dt.customer.id = :customerId " +
+            "AND dt.used = false " +
+            "AND dt.expiresAt > :now")
+    List<ActiveDownloadToken> findActiveTokensByCustomer(
+            @Param("customerId") UUID customerId,
+            @Param("now") LocalDateTime now
+    );
 }
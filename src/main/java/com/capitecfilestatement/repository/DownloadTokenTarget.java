@@ -0,0 +1,13 @@
+package com.capitecfilestatement.repository;
+import java.util.UUID;
+
+// Projection of a download token joined with its statement, everything needed to serve the download
+public interface DownloadTokenTarget {
+    UUID getStatementId();
+    UUID getCustomerId();
+    String getS3Key();
+    String getFileName();
+    String getContentType();
+    String getChecksumSha256();
+    Long getFileSizeBytes();
+}
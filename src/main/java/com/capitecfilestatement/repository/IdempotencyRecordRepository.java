@@ -0,0 +1,42 @@
+package com.capitecfilestatement.repository;
+import com.capitecfilestatement.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, UUID> {
+
+    // Claims the key unless another request already holds it; returns 1 if this call inserted the row
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys " +
+            "(id, customer_id, idempotency_key, request_fingerprint, status, created_at, expires_at) " +
+            "VALUES (gen_random_uuid(), :customerId, :idempotencyKey, :fingerprint, 'IN_PROGRESS', :now, :claimExpiresAt) " +
+            "ON CONFLICT (customer_id, idempotency_key) DO NOTHING",
+            nativeQuery = true)
+    int tryClaim(
+            @Param("customerId") UUID customerId,
+            @Param("idempotencyKey") String idempotencyKey,
+            @Param("fingerprint") String fingerprint,
+            @Param("now") LocalDateTime now,
+            @Param("claimExpiresAt") LocalDateTime claimExpiresAt
+    );
+
+    @Query(value = "SELECT * FROM idempotency_keys WHERE customer_id = :customerId " +
+            "AND idempotency_key = :idempotencyKey FOR UPDATE",
+            nativeQuery = true)
+    Optional<IdempotencyRecord> findForUpdate(
+            @Param("customerId") UUID customerId,
+            @Param("idempotencyKey") String idempotencyKey
+    );
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.expiresAt < :cutoff")
+    int deleteExpired(@Param("cutoff") LocalDateTime cutoff);
+}
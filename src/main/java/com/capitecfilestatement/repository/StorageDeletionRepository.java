@@ -0,0 +1,39 @@
+package com.capitecfilestatement.repository;
+import com.capitecfilestatement.entity.StorageDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface StorageDeletionRepository extends JpaRepository<StorageDeletion, UUID> {
+
+    // Leases a batch of due rows by pushing next_attempt_at past the storage call, and commits right away. SKIP
+    // LOCKED keeps instances claiming at the same moment off each other's rows; the lease keeps them off for the
+    // rest of the batch, and a worker that dies mid-batch leaves its rows due again once the lease runs out
+    @Query(value = "UPDATE storage_deletions SET next_attempt_at = :leaseUntil WHERE id IN (" +
+            "SELECT id FROM storage_deletions WHERE next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *",
+            nativeQuery = true)
+    List<StorageDeletion> claimDue(
+            @Param("now") LocalDateTime now,
+            @Param("leaseUntil") LocalDateTime leaseUntil,
+            @Param("limit") int limit
+    );
+
+    @Modifying
+    @Query("UPDATE StorageDeletion d SET d.attempts = :attempts, d.lastError = :lastError, " +
+            "d.nextAttemptAt = :nextAttemptAt WHERE d.id = :id")
+    int scheduleRetry(
+            @Param("id") UUID id,
+            @Param("attempts") int attempts,
+            @Param("lastError") String lastError,
+            @Param("nextAttemptAt") LocalDateTime nextAttemptAt
+    );
+}
@@ -0,0 +1,45 @@
+package com.capitecfilestatement.repository;
+import com.capitecfilestatement.entity.UploadReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface UploadReservationRepository extends JpaRepository<UploadReservation, UUID> {
+
+    Optional<UploadReservation> findByIdAndCustomerId(UUID id, UUID customerId);
+
+    @Query("SELECT r FROM UploadReservation r WHERE r.customer.id = :customerId " +
+            "AND r.statementPeriod = :period")
+    Optional<UploadReservation> findByCustomerIdAndPeriod(
+            @Param("customerId") UUID customerId,
+            @Param("period") String period
+    );
+
+    @Query("SELECT COUNT(r) > 0 FROM UploadReservation r WHERE r.customer.id = :customerId " +
+            "AND r.statementPeriod = :period " +
+            "AND r.expiresAt > :now")
+    boolean existsActiveReservation(
+            @Param("customerId") UUID customerId,
+            @Param("period") String period,
+            @Param("now") LocalDateTime now
+    );
+
+    List<UploadReservation> findTop500ByExpiresAtBeforeOrderByExpiresAt(LocalDateTime cutoff);
+
+    @Query("SELECT r.statementPeriod FROM UploadReservation r WHERE r.customer.id = :customerId " +
+            "AND r.statementPeriod IN :periods " +
+            "AND r.expiresAt > :now")
+    List<String> findActivePeriods(
+            @Param("customerId") UUID customerId,
+            @Param("periods") Collection<String> periods,
+            @Param("now") LocalDateTime now
+    );
+}
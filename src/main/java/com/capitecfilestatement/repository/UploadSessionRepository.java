@@ -0,0 +1,45 @@
+package com.capitecfilestatement.repository;
+import com.capitecfilestatement.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, UUID> {
+
+    Optional<UploadSession> findByIdAndCustomerId(UUID id, UUID customerId);
+
+    @Query("SELECT u FROM UploadSession u WHERE u.customer.id = :customerId " +
+            "AND u.statementPeriod = :period")
+    Optional<UploadSession> findByCustomerIdAndPeriod(
+            @Param("customerId") UUID customerId,
+            @Param("period") String period
+    );
+
+    @Query("SELECT COUNT(u) > 0 FROM UploadSession u WHERE u.customer.id = :customerId " +
+            "AND u.statementPeriod = :period " +
+            "AND u.expiresAt > :now")
+    boolean existsActiveSession(
+            @Param("customerId") UUID customerId,
+            @Param("period") String period,
+            @Param("now") LocalDateTime now
+    );
+
+    @Query("SELECT u.statementPeriod FROM UploadSession u WHERE u.customer.id = :customerId " +
+            "AND u.statementPeriod IN :periods " +
+            "AND u.expiresAt > :now")
+    List<String> findActivePeriods(
+            @Param("customerId") UUID customerId,
+            @Param("periods") Collection<String> periods,
+            @Param("now") LocalDateTime now
+    );
+
+    List<UploadSession> findTop100ByExpiresAtBeforeOrderByExpiresAt(LocalDateTime cutoff);
+}
@@ -0,0 +1,17 @@
+package com.capitecfilestatement.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+// Client address as seen through the load balancer. Shared by the controllers (audit log) and the rate
+// limiter so both key on the same address. Forwarding headers are never read here: the client sets them.
+// Tomcat's RemoteIpValve (server.forward-headers-strategy=native) replaces the remote address with the
+// X-Forwarded-For entry added by the nearest trusted proxy, and only when the request came through one.
+public final class ClientIpResolver {
+
+    private ClientIpResolver() {
+    }
+
+    public static String resolve(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+}
@@ -1,19 +1,40 @@
 package com.capitecfilestatement.security;
 import com.capitecfilestatement.repository.CustomerRepository;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.UUID;
 
 @Service
-@RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final CustomerRepository customerRepository;
 
+    // JWT-authenticated requests only need the principal, so cache it instead of a customers SELECT per call
+    private final Cache<UUID, UserDetails> principalCache;
+
+    public CustomUserDetailsService(
+            CustomerRepository customerRepository,
+            MeterRegistry meterRegistry,
+            @Value("${security.principal-cache.max-size:10000}") long maxSize,
+            @Value("${security.principal-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.customerRepository = customerRepository;
+        this.principalCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principalCache, "principals");
+    }
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         var customer = customerRepository.findByEmail(email)
@@ -29,12 +50,21 @@ public class CustomUserDetailsService implements UserDetailsService {
     }
 
     public UserDetails loadUserById(UUID userId) {
+        return principalCache.get(userId, this::loadCustomerById);
+    }
+
+    public void evictPrincipal(UUID userId) {
+        principalCache.invalidate(userId);
+    }
+
+    private UserDetails loadCustomerById(UUID userId) {
         var customer = customerRepository.findById(userId)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + userId));
 
+        // The password hash is never checked on the JWT path, so it is not kept in the cache
         return new User(
                 customer.getId().toString(),
-                customer.getPasswordHash(),
+                "",
                 customer.getActive(),
                 true, true, true,
                 Collections.singletonList(new SimpleGrantedAuthority("ROLE_CUSTOMER"))
@@ -0,0 +1,37 @@
+package com.capitecfilestatement.security;
+import com.capitecfilestatement.entity.Customer;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+
+// JPA entity listener on Customer: deactivation or a password change must not outlive the principal cache TTL
+@Component
+@RequiredArgsConstructor
+public class CustomerPrincipalInvalidator {
+
+    // Resolved lazily, the listener is instantiated while the EntityManagerFactory is still being built
+    private final ObjectProvider<CustomUserDetailsService> userDetailsService;
+
+    @PostUpdate
+    @PostRemove
+    public void onCustomerChanged(Customer customer) {
+        UUID customerId = customer.getId();
+        userDetailsService.getObject().evictPrincipal(customerId);
+
+        // Evict again once committed, a concurrent request may have re-cached the old row in between
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userDetailsService.getObject().evictPrincipal(customerId);
+                }
+            });
+        }
+    }
+}
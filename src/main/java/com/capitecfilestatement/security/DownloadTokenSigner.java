@@ -0,0 +1,104 @@
+package com.capitecfilestatement.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+// Self-contained download tokens: base64url(payload) "." base64url(HMAC-SHA256(payload)), verified without a DB read
+@Slf4j
+@Component
+public class DownloadTokenSigner {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    // version + statementId + customerId + expiry (epoch seconds) + nonce
+    private static final int PAYLOAD_LENGTH = 1 + 16 + 16 + 8 + 16;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec signingKey;
+
+    // Falls back to the JWT secret, but never signs with it directly
+    public DownloadTokenSigner(@Value("${download-link.signing-key:${security.jwt.secret-key}}") String secret) {
+        this.signingKey = SigningKeys.derive(secret, "download-link");
+    }
+
+    public String sign(Payload payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(PAYLOAD_LENGTH)
+                .put(VERSION);
+        putUuid(buffer, payload.statementId());
+        putUuid(buffer, payload.customerId());
+        buffer.putLong(payload.expiresAt().getEpochSecond());
+        putUuid(buffer, payload.nonce());
+
+        byte[] body = buffer.array();
+        return ENCODER.encodeToString(body) + "." + ENCODER.encodeToString(mac(body));
+    }
+
+    public Optional<Payload> verify(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0) {
+            return Optional.empty();
+        }
+
+        try {
+            byte[] body = DECODER.decode(token.substring(0, separator));
+            byte[] signature = DECODER.decode(token.substring(separator + 1));
+
+            if (body.length != PAYLOAD_LENGTH || body[0] != VERSION
+                    || !MessageDigest.isEqual(mac(body), signature)) {
+                return Optional.empty();
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(body, 1, PAYLOAD_LENGTH - 1);
+            UUID statementId = getUuid(buffer);
+            UUID customerId = getUuid(buffer);
+            Instant expiresAt = Instant.ofEpochSecond(buffer.getLong());
+            UUID nonce = getUuid(buffer);
+
+            if (!expiresAt.isAfter(Instant.now())) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new Payload(statementId, customerId, expiresAt, nonce));
+        } catch (IllegalArgumentException e) {
+            log.debug("Malformed download token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public static boolean isSignedToken(String token) {
+        return token.indexOf('.') >= 0;
+    }
+
+    private byte[] mac(byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(signingKey);
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign download token", e);
+        }
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    public record Payload(UUID statementId, UUID customerId, Instant expiresAt, UUID nonce) {}
+}
@@ -1,15 +1,26 @@
 package com.capitecfilestatement.security;
 
 import com.capitecfilestatement.entity.Customer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -19,11 +30,43 @@ public class JwtTokenProvider {
     private final SecretKey secretKey;
     private final long expirationMs;
 
+    // JwtParser is immutable and thread-safe, build it once rather than per call
+    private final JwtParser parser;
+
+    // Keyed by SHA-256 of the token so raw bearer tokens are never held on the heap longer than the request
+    private final Cache<String, VerifiedToken> verifiedTokens;
+
     public JwtTokenProvider(
             @Value("${security.jwt.secret-key}") String secret,
-            @Value("${security.jwt.expiration}") long expirationMs) {
+            @Value("${security.jwt.expiration}") long expirationMs,
+            @Value("${security.jwt.verified-cache.max-size:10000}") long verifiedCacheMaxSize,
+            MeterRegistry meterRegistry) {
         this.secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.expirationMs = expirationMs;
+        this.parser = Jwts.parser()
+                .verifyWith(secretKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), value.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "verified_jwts");
     }
 
     public String generateToken(Customer customer) {
@@ -39,27 +82,49 @@ public class JwtTokenProvider {
                 .compact();
     }
 
-    public UUID getUserIdFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(secretKey)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    // Parses and verifies the token once, returning subject and expiry together
+    public Optional<VerifiedToken> verify(String token) {
+        String cacheKey = digest(token);
+
+        VerifiedToken cached = verifiedTokens.getIfPresent(cacheKey);
+        if (cached != null && cached.expiresAt().isAfter(Instant.now())) {
+            return Optional.of(cached);
+        }
+
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            Instant expiresAt = claims.getExpiration() != null
+                    ? claims.getExpiration().toInstant()
+                    : Instant.now().plusMillis(expirationMs);
 
-        return UUID.fromString(claims.getSubject());
+            VerifiedToken verified = new VerifiedToken(UUID.fromString(claims.getSubject()), expiresAt);
+            verifiedTokens.put(cacheKey, verified);
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Debug only: rejected tokens are routine and ERROR logging here was measurable under load
+            log.debug("Invalid JWT token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public UUID getUserIdFromToken(String token) {
+        return verify(token)
+                .map(VerifiedToken::userId)
+                .orElseThrow(() -> new JwtException("Invalid JWT token"));
     }
 
     public boolean validateToken(String token) {
+        return verify(token).isPresent();
+    }
+
+    private static String digest(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            log.error("Invalid JWT token: {}", e.getMessage());
-            return false;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
-}
 
+    public record VerifiedToken(UUID userId, Instant expiresAt) {}
+}
@@ -0,0 +1,159 @@
+package com.capitecfilestatement.security;
+
+import com.capitecfilestatement.exception.GlobalExceptionHandler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Throttles the statement API per customer and per client IP before authentication, so a rejected request
+// costs a cache lookup and a CAS but no database or storage work. The customer comes from the JWT itself,
+// verified through JwtTokenProvider's cache rather than a principal lookup.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String API_PREFIX = "/api/statements";
+
+    enum Endpoint {
+        GENERATE_LINK("generate-link"),
+        DOWNLOAD("download"),
+        UPLOAD("upload"),
+        API("api");
+
+        private final String configKey;
+
+        Endpoint(String configKey) {
+            this.configKey = configKey;
+        }
+    }
+
+    private final RateLimiter rateLimiter;
+    private final JwtTokenProvider tokenProvider;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Map<Endpoint, RateLimiter.Limit> customerLimits = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, RateLimiter.Limit> ipLimits = new EnumMap<>(Endpoint.class);
+
+    public RateLimitFilter(
+            RateLimiter rateLimiter,
+            JwtTokenProvider tokenProvider,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            Environment environment,
+            @Value("${rate-limit.enabled:true}") boolean enabled) {
+        this.rateLimiter = rateLimiter;
+        this.tokenProvider = tokenProvider;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        for (Endpoint endpoint : Endpoint.values()) {
+            customerLimits.put(endpoint, limit(environment, endpoint, "customer"));
+            ipLimits.put(endpoint, limit(environment, endpoint, "ip"));
+        }
+    }
+
+    // rate-limit.<endpoint>.<customer|ip>.burst and .per-second; a missing or zero limit disables that check
+    private static RateLimiter.Limit limit(Environment environment, Endpoint endpoint, String scope) {
+        String prefix = "rate-limit." + endpoint.configKey + "." + scope + ".";
+        return new RateLimiter.Limit(
+                environment.getProperty(prefix + "burst", Integer.class, 0),
+                environment.getProperty(prefix + "per-second", Double.class, 0.0));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith(API_PREFIX);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        Endpoint endpoint = classify(request);
+
+        RateLimiter.Limit customerLimit = customerLimits.get(endpoint);
+        if (customerLimit.enabled()) {
+            Optional<UUID> customerId = customerId(request);
+            if (customerId.isPresent()) {
+                long waitNanos = rateLimiter.tryAcquire(endpoint.name(), customerId.get().toString(), customerLimit);
+                if (waitNanos > 0) {
+                    reject(response, endpoint, "customer", waitNanos);
+                    return;
+                }
+            }
+        }
+
+        RateLimiter.Limit ipLimit = ipLimits.get(endpoint);
+        if (ipLimit.enabled()) {
+            long waitNanos = rateLimiter.tryAcquire(endpoint.name(), ClientIpResolver.resolve(request), ipLimit);
+            if (waitNanos > 0) {
+                reject(response, endpoint, "ip", waitNanos);
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private static Endpoint classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(API_PREFIX.length());
+        String method = request.getMethod();
+
+        if (path.startsWith("/download/")) {
+            return Endpoint.DOWNLOAD;
+        }
+        if ("POST".equals(method)) {
+            if (path.equals("/generate-link") || path.equals("/bulk/generate-link")) {
+                return Endpoint.GENERATE_LINK;
+            }
+            if (path.equals("/upload") || path.equals("/bulk/upload") || path.startsWith("/uploads")) {
+                return Endpoint.UPLOAD;
+            }
+        }
+        return Endpoint.API;
+    }
+
+    private Optional<UUID> customerId(HttpServletRequest request) {
+        String jwt = JwtAuthenticationFilter.getJwtFromRequest(request);
+        if (!StringUtils.hasText(jwt)) {
+            return Optional.empty();
+        }
+        return tokenProvider.verify(jwt).map(JwtTokenProvider.VerifiedToken::userId);
+    }
+
+    private void reject(HttpServletResponse response, Endpoint endpoint, String scope, long waitNanos) throws IOException {
+        meterRegistry.counter("rate.limit.rejected",
+                "endpoint", endpoint.configKey,
+                "scope", scope).increment();
+
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new GlobalExceptionHandler.ErrorResponse(
+                HttpStatus.TOO_MANY_REQUESTS.value(),
+                "Too many requests, please retry later",
+                LocalDateTime.now()));
+    }
+}
@@ -0,0 +1,81 @@
+package com.capitecfilestatement.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Token buckets kept as GCRA: each bucket is a single "theoretical arrival time" updated with CAS, which
+// admits exactly what a token bucket of the same burst and rate would, without locks or a refill thread.
+// Buckets live in a size-bounded cache. Idle expiry only drops buckets that have refilled, as long as
+// idle-eviction-seconds exceeds the slowest burst / per-second. Size eviction does not: with more active
+// subjects than max-buckets a throttled bucket can be evicted and come back full, so size max-buckets above
+// the number of clients expected within one idle window.
+@Component
+public class RateLimiter {
+
+    private final Cache<BucketKey, Bucket> buckets;
+
+    public RateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${rate-limit.max-buckets:100000}") long maxBuckets,
+            @Value("${rate-limit.idle-eviction-seconds:600}") long idleEvictionSeconds) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxBuckets)
+                .expireAfterAccess(Duration.ofSeconds(idleEvictionSeconds))
+                .build();
+        Gauge.builder("rate.limit.buckets", buckets, Cache::estimatedSize)
+                .description("Rate limit buckets held in memory")
+                .register(meterRegistry);
+    }
+
+    // Returns 0 if the request is allowed, otherwise the nanoseconds until it would be
+    public long tryAcquire(String scope, String subject, Limit limit) {
+        return tryAcquire(scope, subject, limit, System.nanoTime());
+    }
+
+    long tryAcquire(String scope, String subject, Limit limit, long nowNanos) {
+        Bucket bucket = buckets.get(new BucketKey(scope, subject), key -> new Bucket());
+        return bucket.tryAcquire(nowNanos, limit);
+    }
+
+    public record Limit(int burst, double perSecond) {
+
+        public boolean enabled() {
+            return burst > 0 && perSecond > 0;
+        }
+
+        long emissionIntervalNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        }
+    }
+
+    private record BucketKey(String scope, String subject) {}
+
+    private static final class Bucket {
+        // Initialised in the past so a new bucket starts full
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE / 2);
+
+        long tryAcquire(long now, Limit limit) {
+            long interval = limit.emissionIntervalNanos();
+            long tolerance = interval * limit.burst();
+            while (true) {
+                long current = theoreticalArrival.get();
+                long next = Math.max(current, now) + interval;
+                long wait = next - tolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.capitecfilestatement.security;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+// HKDF-SHA256 (RFC 5869) over a configured secret. Each signer derives its key under its own label, so a secret
+// shared with the JWT signer, or between signers, never lets a signature made for one purpose verify for another.
+public final class SigningKeys {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+
+    private SigningKeys() {
+    }
+
+    public static SecretKeySpec derive(String secret, String label) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("No signing secret configured for " + label);
+        }
+        try {
+            // Extract with the all-zero salt, then a single expand block is the whole key
+            byte[] prk = hmac(new byte[KEY_LENGTH], secret.getBytes(StandardCharsets.UTF_8));
+            byte[] info = label.getBytes(StandardCharsets.UTF_8);
+            byte[] block = new byte[info.length + 1];
+            System.arraycopy(info, 0, block, 0, info.length);
+            block[info.length] = 1;
+            return new SecretKeySpec(hmac(prk, block), ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to derive signing key for " + label, e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, byte[] data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(ALGORITHM);
+        mac.init(new SecretKeySpec(key, ALGORITHM));
+        return mac.doFinal(data);
+    }
+}
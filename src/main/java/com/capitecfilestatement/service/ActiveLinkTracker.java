@@ -0,0 +1,294 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.repository.ActiveDownloadToken;
+import com.capitecfilestatement.repository.DownloadTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// In-memory count of unused, unexpired download links per customer so the link limit is checked without a
+// query. Links expire through a hashed timer wheel with one-second slots keyed on expiresAt. Counts are per
+// instance, seeded from download_tokens at startup. Links consumed or issued on other instances are not seen
+// here until a table-mode customer reaches the limit, when tryAcquireOrRecount corrects the count from the table.
+@Slf4j
+@Component
+public class ActiveLinkTracker {
+
+    private static final int WHEEL_SLOTS = 1024;
+
+    private final DownloadTokenRepository downloadTokenRepository;
+
+    // A customer's set is only changed inside compute(), which locks a single hash bin, so updates for different
+    // customers never contend
+    private final Map<UUID, Set<Link>> linksByCustomer = new ConcurrentHashMap<>();
+    private final Map<String, Link> linksByKey = new ConcurrentHashMap<>();
+    private final Queue<Link>[] wheel;
+    private volatile long lastTick;
+
+    private final Counter rejectedCounter;
+    private final Counter recountCounter;
+
+    @SuppressWarnings("unchecked")
+    public ActiveLinkTracker(DownloadTokenRepository downloadTokenRepository, MeterRegistry meterRegistry) {
+        this.downloadTokenRepository = downloadTokenRepository;
+        this.wheel = new Queue[WHEEL_SLOTS];
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastTick = Instant.now().getEpochSecond();
+
+        Gauge.builder("download.links.active", linksByKey, Map::size)
+                .description("Unused, unexpired download links tracked in memory")
+                .register(meterRegistry);
+        this.rejectedCounter = meterRegistry.counter("download.links.limit.rejected");
+        this.recountCounter = meterRegistry.counter("download.links.limit.recounts");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seedFromDatabase() {
+        List<ActiveDownloadToken> active = downloadTokenRepository.findActiveTokens(LocalDateTime.now());
+        active.forEach(this::registerStored);
+        log.info("Seeded {} active download links", active.size());
+    }
+
+    // For links that only live in memory (stateless mode): the count cannot be checked against the table
+    public boolean tryAcquire(UUID customerId, UUID statementId, String linkKey, Instant expiresAt, int limit) {
+        if (!acquire(new Link(customerId, statementId, linkKey, expiresAt.getEpochSecond(), false), limit)) {
+            rejectedCounter.increment();
+            return false;
+        }
+        return true;
+    }
+
+    // For links stored in download_tokens. At the limit the customer's count is rebuilt from the table before
+    // rejecting, so links consumed or deleted through another instance stop counting against the customer here
+    public boolean tryAcquireOrRecount(UUID customerId, UUID statementId, String linkKey, Instant expiresAt, int limit) {
+        Link link = new Link(customerId, statementId, linkKey, expiresAt.getEpochSecond(), true);
+        if (acquire(link, limit)) {
+            return true;
+        }
+        recount(customerId);
+        if (acquire(link, limit)) {
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    public void release(String linkKey) {
+        Link link = linksByKey.remove(linkKey);
+        if (link != null) {
+            expire(link);
+        }
+    }
+
+    // The statements' rows in download_tokens go with them, so their links no longer count once the delete commits
+    public void releaseStatements(UUID customerId, Collection<UUID> statementIds) {
+        Set<UUID> deleted = Set.copyOf(statementIds);
+        Runnable releaseLinks = () -> {
+            Set<Link> links = linksByCustomer.get(customerId);
+            if (links == null) {
+                return;
+            }
+            for (Link link : links) {
+                if (link.statementId != null && deleted.contains(link.statementId)) {
+                    release(link.key);
+                }
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    releaseLinks.run();
+                }
+            });
+        } else {
+            releaseLinks.run();
+        }
+    }
+
+    private boolean acquire(Link link, int limit) {
+        boolean[] acquired = {false};
+        linksByCustomer.compute(link.customerId, (id, links) -> {
+            Set<Link> current = links == null ? ConcurrentHashMap.newKeySet() : links;
+            if (current.size() >= limit) {
+                return links;
+            }
+            acquired[0] = true;
+            current.add(link);
+            return current;
+        });
+
+        if (!acquired[0]) {
+            return false;
+        }
+
+        linksByKey.put(link.key, link);
+        schedule(link);
+
+        // A link whose insert rolls back was never issued
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        link.markCommitted();
+                    } else {
+                        release(link.key);
+                    }
+                }
+            });
+        } else {
+            link.markCommitted();
+        }
+        return true;
+    }
+
+    // Links this instance committed before the query started but the table no longer has as unused were consumed,
+    // deleted or purged elsewhere and are released; unused rows not tracked here were issued elsewhere and are
+    // added. Links still in flight on this instance are kept, their rows are not visible yet
+    private void recount(UUID customerId) {
+        recountCounter.increment();
+        long queriedAt = System.nanoTime();
+        List<ActiveDownloadToken> stored = downloadTokenRepository
+                .findActiveTokensByCustomer(customerId, LocalDateTime.now());
+
+        Set<String> storedKeys = new HashSet<>();
+        for (ActiveDownloadToken token : stored) {
+            storedKeys.add(token.getToken());
+            registerStored(token);
+        }
+
+        Set<Link> links = linksByCustomer.get(customerId);
+        if (links == null) {
+            return;
+        }
+        for (Link link : links) {
+            if (link.stored && link.committedBefore(queriedAt) && !storedKeys.contains(link.key)) {
+                if (linksByKey.remove(link.key, link)) {
+                    expire(link);
+                }
+            }
+        }
+    }
+
+    private void registerStored(ActiveDownloadToken token) {
+        Instant expiresAt = token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant();
+        Link link = new Link(token.getCustomerId(), token.getStatementId(), token.getToken(),
+                expiresAt.getEpochSecond(), true);
+        link.markCommitted();
+        // Skip links already registered by requests served on this instance
+        if (linksByKey.putIfAbsent(link.key, link) == null) {
+            linksByCustomer.compute(link.customerId, (id, links) -> {
+                Set<Link> current = links == null ? ConcurrentHashMap.newKeySet() : links;
+                current.add(link);
+                return current;
+            });
+            schedule(link);
+        }
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void advance() {
+        advance(Instant.now().getEpochSecond());
+    }
+
+    void advance(long now) {
+        // After a long pause every slot is visited once rather than once per missed second
+        long from = Math.max(lastTick + 1, now - WHEEL_SLOTS + 1);
+        // Published before the sweep, so schedule() can tell when it added a link behind it
+        lastTick = now;
+
+        for (long tick = from; tick <= now; tick++) {
+            Iterator<Link> slot = wheel[slotFor(tick)].iterator();
+            while (slot.hasNext()) {
+                Link link = slot.next();
+                if (link.released.get()) {
+                    slot.remove();
+                } else if (link.expiresAtEpochSecond <= now) {
+                    slot.remove();
+                    linksByKey.remove(link.key, link);
+                    expire(link);
+                }
+                // Otherwise the link is due on a later revolution of the wheel
+            }
+        }
+    }
+
+    // Add first, then check: either the sweep that covers this second has not started and will see the link, or
+    // its tick is already visible here and the link is taken back out. Otherwise a link added while advance() was
+    // sweeping its slot would wait a whole revolution. expire() only counts once if both end up handling it.
+    private void schedule(Link link) {
+        Queue<Link> slot = wheel[slotFor(link.expiresAtEpochSecond)];
+        slot.add(link);
+        if (link.expiresAtEpochSecond <= lastTick && slot.remove(link)) {
+            linksByKey.remove(link.key, link);
+            expire(link);
+        }
+    }
+
+    private void expire(Link link) {
+        if (link.released.compareAndSet(false, true)) {
+            linksByCustomer.computeIfPresent(link.customerId, (id, links) -> {
+                links.remove(link);
+                return links.isEmpty() ? null : links;
+            });
+        }
+    }
+
+    private static int slotFor(long epochSecond) {
+        return (int) Math.floorMod(epochSecond, (long) WHEEL_SLOTS);
+    }
+
+    private static final class Link {
+        private final UUID customerId;
+        private final UUID statementId;
+        private final String key;
+        private final long expiresAtEpochSecond;
+        // Has a row in download_tokens, so recount() may release it when the row is gone
+        private final boolean stored;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private long committedAtNanos;
+        private volatile boolean committed;
+
+        private Link(UUID customerId, UUID statementId, String key, long expiresAtEpochSecond, boolean stored) {
+            this.customerId = customerId;
+            this.statementId = statementId;
+            this.key = key;
+            this.expiresAtEpochSecond = expiresAtEpochSecond;
+            this.stored = stored;
+        }
+
+        private void markCommitted() {
+            committedAtNanos = System.nanoTime();
+            committed = true;
+        }
+
+        private boolean committedBefore(long nanos) {
+            return committed && committedAtNanos - nanos <= 0;
+        }
+    }
+}
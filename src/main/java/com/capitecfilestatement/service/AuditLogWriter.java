@@ -0,0 +1,576 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Every event is appended to a journal, then queued and written in JDBC batches. With fsync-before-acknowledge
+// the append is forced to disk before record() returns and concurrent callers share one fsync; without it the
+// writer thread forces the journal every flush interval, so a crash can lose up to that much. The journal is
+// rotated every replay interval: a segment whose events all made it into the table is deleted, any other segment
+// is replayed, so an event that reached the disk survives a crash, a failed batch or a full queue.
+@Slf4j
+@Component
+public class AuditLogWriter {
+
+    public enum OverflowPolicy { BLOCK, SPILL, REJECT }
+
+    // Ids are fixed at record time, so an event replayed from the journal after its batch went in is a no-op
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_logs (id, customer_id, action, resource_type, resource_id, " +
+                    "ip_address, user_agent, details, timestamp) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (id) DO NOTHING";
+
+    private static final ParameterizedPreparedStatementSetter<AuditEvent> INSERT_SETTER = (ps, event) -> {
+        ps.setObject(1, event.id());
+        ps.setObject(2, event.customerId(), Types.OTHER);
+        ps.setString(3, event.action());
+        ps.setString(4, event.resourceType());
+        ps.setObject(5, event.resourceId(), Types.OTHER);
+        ps.setString(6, event.ipAddress());
+        ps.setString(7, event.userAgent());
+        ps.setString(8, event.details());
+        ps.setTimestamp(9, Timestamp.valueOf(event.timestamp()));
+    };
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Pending> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean fsyncBeforeAcknowledge;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Path journalFile;
+    private final Path quarantineFile;
+
+    // Guards the open segment and the append sequence; the fsync itself runs under syncLock only
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private Segment segment;
+    private List<Segment> closedSegments = new ArrayList<>();
+    private long appended;
+    private final AtomicLong synced = new AtomicLong();
+
+    private final Timer flushTimer;
+    private final Timer journalSyncTimer;
+    private final DistributionSummary batchSizeSummary;
+    private final Counter spilledCounter;
+    private final Counter rejectedCounter;
+    private final Counter lostCounter;
+    private final Counter quarantinedCounter;
+    private final Counter flushFailureCounter;
+    private final Counter journalFailureCounter;
+
+    private volatile boolean running = true;
+    private Thread writerThread;
+
+    public AuditLogWriter(
+            JdbcTemplate jdbcTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${audit.queue-capacity:10000}") int queueCapacity,
+            @Value("${audit.batch-size:200}") int batchSize,
+            @Value("${audit.flush-interval-ms:250}") long flushIntervalMs,
+            @Value("${audit.overflow-policy:SPILL}") OverflowPolicy overflowPolicy,
+            @Value("${audit.journal-file:data/audit-journal.jsonl}") String journalFile,
+            @Value("${audit.journal.fsync-before-acknowledge:true}") boolean fsyncBeforeAcknowledge) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.fsyncBeforeAcknowledge = fsyncBeforeAcknowledge;
+        this.journalFile = Path.of(journalFile).toAbsolutePath();
+        this.quarantineFile = this.journalFile.resolveSibling(this.journalFile.getFileName() + ".quarantine");
+
+        Gauge.builder("audit.queue.depth", queue, BlockingQueue::size)
+                .description("Audit events waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("audit.flush.latency")
+                .description("Time to write one audit batch")
+                .register(meterRegistry);
+        this.journalSyncTimer = Timer.builder("audit.journal.sync.latency")
+                .description("Time a caller waits for its audit event to reach the journal on disk")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("audit.flush.batch.size")
+                .description("Audit events per JDBC batch")
+                .register(meterRegistry);
+        this.spilledCounter = meterRegistry.counter("audit.events.spilled");
+        this.rejectedCounter = meterRegistry.counter("audit.events.rejected");
+        this.lostCounter = meterRegistry.counter("audit.events.lost");
+        this.quarantinedCounter = meterRegistry.counter("audit.events.quarantined");
+        this.flushFailureCounter = meterRegistry.counter("audit.flush.failures");
+        this.journalFailureCounter = meterRegistry.counter("audit.journal.failures");
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        // Segments left open by the previous run may hold events that never reached the table
+        Files.createDirectories(journalFile.getParent());
+        try (DirectoryStream<Path> leftover = Files.newDirectoryStream(
+                journalFile.getParent(), journalFile.getFileName() + ".*" + SEGMENT_SUFFIX)) {
+            for (Path file : leftover) {
+                Files.move(file, replayPath(file), StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        writerThread = new Thread(this::runWriter, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        // Anything the writer did not get to is already in the journal and is replayed after the restart
+        List<Pending> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.stream().filter(pending -> pending.segment() == null).forEach(pending -> journalOrLose(pending.event()));
+        journalLock.lock();
+        try {
+            if (segment != null) {
+                closeSegment(segment);
+                segment = null;
+            }
+        } finally {
+            journalLock.unlock();
+        }
+    }
+
+    public void record(AuditLog auditLog) {
+        AuditEvent event = AuditEvent.from(auditLog);
+
+        // Only audit work that actually committed, as the in-transaction insert used to. afterCommit still runs
+        // on the transaction's connection, so with fsync-before-acknowledge the connection waits for the fsync too
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    accept(event);
+                }
+            });
+        } else {
+            accept(event);
+        }
+    }
+
+    private void accept(AuditEvent event) {
+        // REJECT sheds the event before it costs a journal write
+        if (overflowPolicy == OverflowPolicy.REJECT && queue.remainingCapacity() == 0) {
+            rejectedCounter.increment();
+            log.warn("Audit queue full, rejected {} event for resource {}", event.action(), event.resourceId());
+            return;
+        }
+        enqueue(new Pending(event, journal(event)));
+    }
+
+    private void enqueue(Pending pending) {
+        if (queue.offer(pending)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    queue.put(pending);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    leaveToReplay(pending);
+                }
+            }
+            // Filled up after the REJECT check, and the event is journaled by now
+            case SPILL, REJECT -> leaveToReplay(pending);
+        }
+    }
+
+    private void leaveToReplay(Pending pending) {
+        if (pending.segment() != null) {
+            spilledCounter.increment();
+        } else {
+            lostCounter.increment();
+            log.error("Audit queue full and journal unavailable, lost {} event for resource {}",
+                    pending.event().action(), pending.event().resourceId());
+        }
+    }
+
+    // Appends the event and, with fsync-before-acknowledge, returns once it is on disk; null if the journal could
+    // not take it
+    private Segment journal(AuditEvent event) {
+        ByteBuffer line;
+        try {
+            line = ByteBuffer.wrap((objectMapper.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            journalFailureCounter.increment();
+            log.error("Failed to serialize {} audit event for the journal", event.action(), e);
+            return null;
+        }
+
+        Segment target;
+        long sequence;
+        journalLock.lock();
+        try {
+            if (segment == null) {
+                segment = openSegment();
+            }
+            target = segment;
+            while (line.hasRemaining()) {
+                target.channel().write(line);
+            }
+            target.unwritten().incrementAndGet();
+            sequence = ++appended;
+        } catch (IOException e) {
+            journalFailureCounter.increment();
+            log.error("Failed to append {} audit event to {}", event.action(), journalFile, e);
+            return null;
+        } finally {
+            journalLock.unlock();
+        }
+
+        if (fsyncBeforeAcknowledge) {
+            journalSyncTimer.record(() -> sync(sequence));
+        }
+        return target;
+    }
+
+    // Group commit: whoever gets the lock forces everything appended so far, and callers it covered return
+    // without a disk write of their own
+    private void sync(long sequence) {
+        syncLock.lock();
+        try {
+            if (synced.get() >= sequence) {
+                return;
+            }
+            FileChannel channel;
+            long upTo;
+            journalLock.lock();
+            try {
+                channel = segment != null ? segment.channel() : null;
+                upTo = appended;
+            } finally {
+                journalLock.unlock();
+            }
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                } catch (ClosedChannelException e) {
+                    // Rotated meanwhile, and rotation forces a segment before closing it
+                } catch (IOException e) {
+                    journalFailureCounter.increment();
+                    log.error("Failed to sync audit journal {}", journalFile, e);
+                    return;
+                }
+            }
+            synced.accumulateAndGet(upTo, Math::max);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void syncAppended() {
+        long upTo;
+        journalLock.lock();
+        try {
+            upTo = appended;
+        } finally {
+            journalLock.unlock();
+        }
+        sync(upTo);
+    }
+
+    private Segment openSegment() throws IOException {
+        Path path = journalFile.resolveSibling(journalFile.getFileName() + "." + System.currentTimeMillis() + SEGMENT_SUFFIX);
+        return new Segment(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE),
+                new AtomicInteger());
+    }
+
+    // Caller holds journalLock
+    private void closeSegment(Segment closing) {
+        try {
+            closing.channel().force(false);
+            synced.accumulateAndGet(appended, Math::max);
+            closing.channel().close();
+        } catch (IOException e) {
+            journalFailureCounter.increment();
+            log.error("Failed to close audit journal segment {}", closing.path(), e);
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            if (!fsyncBeforeAcknowledge) {
+                syncAppended();
+            }
+            try {
+                Pending first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Flush when the batch is full or the oldest event has waited a full interval
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // The batch in hand and whatever is still queued are in the journal
+                Thread.currentThread().interrupt();
+                running = false;
+                return;
+            } catch (Exception e) {
+                log.error("Audit writer failed to flush batch", e);
+            } finally {
+                if (!batch.isEmpty()) {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        try {
+            flushTimer.record(() -> insertBatch(batch.stream().map(Pending::event).toList()));
+            batchSizeSummary.record(batch.size());
+            batch.stream().filter(pending -> pending.segment() != null)
+                    .forEach(pending -> pending.segment().unwritten().decrementAndGet());
+        } catch (Exception e) {
+            flushFailureCounter.increment();
+            log.error("Failed to write {} audit events, leaving them to the journal replay", batch.size(), e);
+            batch.stream().filter(pending -> pending.segment() == null).forEach(pending -> journalOrLose(pending.event()));
+        }
+    }
+
+    private void journalOrLose(AuditEvent event) {
+        if (journal(event) == null) {
+            lostCounter.increment();
+            log.error("Lost {} audit event for resource {}", event.action(), event.resourceId());
+        }
+    }
+
+    private void insertBatch(List<AuditEvent> batch) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), INSERT_SETTER);
+    }
+
+    @Scheduled(fixedDelayString = "${audit.replay-interval-ms:30000}")
+    public void replayJournal() {
+        // Segments closed one interval ago have given the writer that long to get their events in
+        List<Segment> settled;
+        journalLock.lock();
+        try {
+            settled = closedSegments;
+            closedSegments = new ArrayList<>();
+            if (segment != null) {
+                closeSegment(segment);
+                closedSegments.add(segment);
+                segment = null;
+            }
+        } finally {
+            journalLock.unlock();
+        }
+
+        for (Segment closed : settled) {
+            try {
+                if (closed.unwritten().get() == 0) {
+                    Files.delete(closed.path());
+                } else {
+                    Files.move(closed.path(), replayPath(closed.path()), StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.error("Failed to retire audit journal segment {}", closed.path(), e);
+            }
+        }
+
+        try (DirectoryStream<Path> pending = Files.newDirectoryStream(
+                journalFile.getParent(), journalFile.getFileName() + ".*" + REPLAY_SUFFIX)) {
+            for (Path file : pending) {
+                replayFile(file);
+            }
+        } catch (IOException e) {
+            log.error("Failed to list audit journal files in {}", journalFile.getParent(), e);
+        }
+    }
+
+    // Inserted in batches; a failed batch is retried row by row so one bad row cannot hold back the rest.
+    // Rows the table rejects outright, and lines that do not parse, are moved to the quarantine file. Any other
+    // failure means the database is unavailable, so the rest of the file is kept for the next replay.
+    private void replayFile(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Failed to read audit journal file {}, will retry", file, e);
+            return;
+        }
+
+        List<AuditEvent> events = new ArrayList<>();
+        List<String> quarantined = new ArrayList<>();
+        for (String line : lines) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                events.add(objectMapper.readValue(line, AuditEvent.class));
+            } catch (IOException e) {
+                // A crash mid-append leaves a torn last line
+                log.warn("Unreadable line in audit journal file {}", file, e);
+                quarantined.add(line);
+            }
+        }
+
+        List<AuditEvent> retry = new ArrayList<>();
+        int replayed = 0;
+        for (int from = 0; from < events.size(); from += batchSize) {
+            List<AuditEvent> chunk = events.subList(from, Math.min(from + batchSize, events.size()));
+            if (!retry.isEmpty()) {
+                retry.addAll(chunk);
+                continue;
+            }
+            try {
+                insertBatch(chunk);
+                replayed += chunk.size();
+                continue;
+            } catch (DataAccessException e) {
+                log.warn("Failed to replay batch of {} audit events from {}, retrying row by row", chunk.size(), file, e);
+            }
+
+            for (AuditEvent event : chunk) {
+                if (!retry.isEmpty()) {
+                    retry.add(event);
+                    continue;
+                }
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> INSERT_SETTER.setValues(ps, event));
+                    replayed++;
+                } catch (DataIntegrityViolationException e) {
+                    log.error("Audit event {} rejected by the table, quarantining it", event.id(), e);
+                    quarantined.add(toLine(event));
+                } catch (DataAccessException e) {
+                    log.warn("Failed to replay audit events from {}, will retry", file, e);
+                    retry.add(event);
+                }
+            }
+        }
+
+        try {
+            if (!quarantined.isEmpty()) {
+                Files.write(quarantineFile, quarantined, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.DSYNC);
+                quarantinedCounter.increment(quarantined.size());
+            }
+            if (retry.isEmpty()) {
+                Files.delete(file);
+            } else {
+                Path rewritten = file.resolveSibling(file.getFileName() + ".tmp");
+                Files.write(rewritten, retry.stream().map(this::toLine).toList(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DSYNC);
+                Files.move(rewritten, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The file is left as it was; replaying it again only repeats inserts that are no-ops
+            log.error("Failed to settle audit journal file {}", file, e);
+            return;
+        }
+
+        if (replayed > 0 || !quarantined.isEmpty()) {
+            log.info("Replayed {} audit events from {}, quarantined {}, {} left to retry",
+                    replayed, file, quarantined.size(), retry.size());
+        }
+    }
+
+    private String toLine(AuditEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize audit event " + event.id(), e);
+        }
+    }
+
+    private Path replayPath(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return segmentFile.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + REPLAY_SUFFIX);
+    }
+
+    private record Segment(Path path, FileChannel channel, AtomicInteger unwritten) {}
+
+    private record Pending(AuditEvent event, Segment segment) {}
+
+    record AuditEvent(
+            UUID id,
+            UUID customerId,
+            String action,
+            String resourceType,
+            UUID resourceId,
+            String ipAddress,
+            String userAgent,
+            String details,
+            LocalDateTime timestamp) {
+
+        static AuditEvent from(AuditLog auditLog) {
+            return new AuditEvent(
+                    auditLog.getId() != null ? auditLog.getId() : UUID.randomUUID(),
+                    auditLog.getCustomer() != null ? auditLog.getCustomer().getId() : null,
+                    auditLog.getAction(),
+                    auditLog.getResourceType(),
+                    auditLog.getResourceId(),
+                    auditLog.getIpAddress(),
+                    auditLog.getUserAgent(),
+                    auditLog.getDetails(),
+                    auditLog.getTimestamp() != null ? auditLog.getTimestamp() : LocalDateTime.now());
+        }
+    }
+}
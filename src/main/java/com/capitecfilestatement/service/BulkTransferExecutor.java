@@ -0,0 +1,66 @@
+package com.capitecfilestatement.service;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Fixed pool for the storage transfers of bulk requests. The pool size is the cap on concurrent transfers
+// across all bulk requests, so a large batch queues instead of opening unbounded storage connections.
+// Deliberately not an Executor bean, which would displace Spring Boot's applicationTaskExecutor.
+// With virtual threads enabled each transfer gets its own virtual thread and a fair semaphore keeps the cap.
+@Slf4j
+@Component
+public class BulkTransferExecutor {
+
+    private final ExecutorService executor;
+    private final Semaphore slots;
+
+    public BulkTransferExecutor(
+            @Value("${bulk.transfer-concurrency:8}") int concurrency,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        if (virtualThreads) {
+            this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bulk-transfer-", 1).factory());
+            this.slots = new Semaphore(concurrency, true);
+            return;
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-transfer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.slots = null;
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> transfer) {
+        if (slots == null) {
+            return CompletableFuture.supplyAsync(transfer, executor);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            slots.acquireUninterruptibly();
+            try {
+                return transfer.get();
+            } finally {
+                slots.release();
+            }
+        }, executor);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Bulk transfers still running at shutdown, interrupting");
+            executor.shutdownNow();
+        }
+    }
+}
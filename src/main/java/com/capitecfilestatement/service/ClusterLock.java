@@ -0,0 +1,72 @@
+package com.capitecfilestatement.service;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Cluster-wide mutual exclusion for scheduled jobs through Postgres session advisory locks. The lock is held
+// on a dedicated connection for the length of the task, so the task's own transactions can commit in
+// batches without giving it up; if the node dies, Postgres drops the lock with the session.
+@Slf4j
+@Component
+public class ClusterLock {
+
+    private final DataSource dataSource;
+
+    public ClusterLock(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    // Runs task if no other node holds the named lock; returns false without waiting if one does
+    public boolean runExclusively(String name, Runnable task) {
+        long key = lockKey(name);
+        try (Connection connection = dataSource.getConnection()) {
+            if (!tryLock(connection, key)) {
+                return false;
+            }
+            try {
+                task.run();
+                return true;
+            } finally {
+                // Pooled connections outlive the session lock's owner, it must be released explicitly
+                unlock(connection, key, name);
+            }
+        } catch (SQLException e) {
+            log.error("Failed to acquire cluster lock: {}", name, e);
+            return false;
+        }
+    }
+
+    private static boolean tryLock(Connection connection, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, key);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection connection, long key, String name) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, key);
+            statement.execute();
+        } catch (SQLException e) {
+            log.error("Failed to release cluster lock: {}, discarding its connection", name, e);
+            // A broken connection is evicted by the pool, and the lock goes with its session
+            try {
+                connection.abort(Runnable::run);
+            } catch (SQLException abortFailure) {
+                log.warn("Failed to abort connection holding cluster lock: {}", name, abortFailure);
+            }
+        }
+    }
+
+    // String.hashCode is specified, so every node derives the same key from the same name
+    private static long lockKey(String name) {
+        return ((long) "capitec-file-statement".hashCode() << 32) | (name.hashCode() & 0xffffffffL);
+    }
+}
@@ -0,0 +1,87 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Caps how many callers hold a pooled connection at once. Taken right where the connection is acquired and
+// released with it, so slow client I/O before or after never holds a permit. Callers past the limit queue
+// fairly for up to maxWait and then fail with 503 and Retry-After, instead of parking inside the pool.
+@Slf4j
+public class ConcurrencyLimiter {
+
+    private final String resource;
+    private final Semaphore permits;
+    private final int limit;
+    private final long maxWaitMillis;
+    private final int retryAfterSeconds;
+    private final String busyMessage;
+
+    private final Timer waitTimer;
+    private final Counter rejectedCounter;
+
+    public ConcurrencyLimiter(
+            String resource,
+            int limit,
+            long maxWaitMillis,
+            int retryAfterSeconds,
+            String busyMessage,
+            MeterRegistry meterRegistry) {
+        this.resource = resource;
+        this.limit = Math.max(1, limit);
+        this.permits = new Semaphore(this.limit, true);
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.busyMessage = busyMessage;
+
+        Gauge.builder("concurrency.limit.inflight", permits, p -> this.limit - p.availablePermits())
+                .tag("resource", resource)
+                .register(meterRegistry);
+        Gauge.builder("concurrency.limit.queued", permits, Semaphore::getQueueLength)
+                .tag("resource", resource)
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("concurrency.limit.wait")
+                .tag("resource", resource)
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("concurrency.limit.rejected")
+                .tag("resource", resource)
+                .register(meterRegistry);
+    }
+
+    public void acquire() {
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        waitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (!acquired) {
+            rejectedCounter.increment();
+            log.warn("Call rejected, all {} {} permits busy", limit, resource);
+            throw new ServiceBusyException(busyMessage, retryAfterSeconds);
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        try {
+            return call.get();
+        } finally {
+            release();
+        }
+    }
+}
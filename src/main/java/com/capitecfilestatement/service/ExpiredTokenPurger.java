@@ -0,0 +1,151 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.repository.DownloadTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Deletes expired download tokens in small committed batches with a pause in between, so a backlog after a
+// traffic spike is worked off without one long transaction holding row locks and flooding WAL. Only the
+// node holding the cluster lock purges. A run can take up to max-run-minutes, so it goes to the purger's own
+// thread rather than holding the scheduler thread that the link tracker tick and the other jobs share.
+@Slf4j
+@Component
+public class ExpiredTokenPurger {
+
+    private static final String LOCK_NAME = "download-token-purge";
+
+    private final DownloadTokenRepository downloadTokenRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ClusterLock clusterLock;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final Duration retention;
+    private final Duration maxRunDuration;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "download-token-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final Counter purgedCounter;
+    private final Timer runTimer;
+    private final AtomicLong lastRowsPerSecond = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+
+    public ExpiredTokenPurger(
+            DownloadTokenRepository downloadTokenRepository,
+            TransactionTemplate transactionTemplate,
+            ClusterLock clusterLock,
+            MeterRegistry meterRegistry,
+            @Value("${download-token-purge.batch-size:5000}") int batchSize,
+            @Value("${download-token-purge.pause-ms:200}") long pauseMillis,
+            @Value("${download-token-purge.retention-hours:24}") long retentionHours,
+            @Value("${download-token-purge.max-run-minutes:30}") long maxRunMinutes) {
+        this.downloadTokenRepository = downloadTokenRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.clusterLock = clusterLock;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+        this.retention = Duration.ofHours(retentionHours);
+        this.maxRunDuration = Duration.ofMinutes(maxRunMinutes);
+
+        this.purgedCounter = meterRegistry.counter("download.tokens.purged");
+        this.runTimer = meterRegistry.timer("download.tokens.purge.duration");
+        Gauge.builder("download.tokens.purge.rows.per.second", lastRowsPerSecond, AtomicLong::get)
+                .description("Delete rate of the last purge run")
+                .register(meterRegistry);
+        Gauge.builder("download.tokens.purge.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("How far the oldest expired token is behind the purge cutoff")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    // Starts a run and returns at once; a run still going from the previous call is left to finish
+    public void purge() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Download token purge still running, skipping");
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    boolean ran = clusterLock.runExclusively(LOCK_NAME, this::purgeBatches);
+                    if (!ran) {
+                        log.debug("Download token purge running on another node, skipping");
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Download token purge failed", e);
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Interrupts the pause between batches; the batch in flight commits or rolls back on its own
+        executor.shutdownNow();
+    }
+
+    private void purgeBatches() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long started = System.nanoTime();
+        long deadline = started + maxRunDuration.toNanos();
+        long total = 0;
+
+        try {
+            int deleted;
+            do {
+                Integer batch = transactionTemplate.execute(status ->
+                        downloadTokenRepository.deleteExpiredBatch(cutoff, batchSize));
+                deleted = batch != null ? batch : 0;
+                total += deleted;
+                purgedCounter.increment(deleted);
+
+                if (deleted < batchSize || System.nanoTime() > deadline) {
+                    break;
+                }
+                // Lets autovacuum, replication and live inserts catch up between batches
+                TimeUnit.MILLISECONDS.sleep(pauseMillis);
+            } while (true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Download token purge interrupted after {} rows", total);
+        } finally {
+            long elapsed = System.nanoTime() - started;
+            runTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            lastRowsPerSecond.set(elapsed > 0 ? total * TimeUnit.SECONDS.toNanos(1) / elapsed : 0);
+            recordLag(cutoff);
+        }
+
+        log.info("Purged {} expired download tokens", total);
+    }
+
+    private void recordLag(LocalDateTime cutoff) {
+        LocalDateTime oldest = downloadTokenRepository.findOldestExpiry();
+        lagSeconds.set(oldest != null && oldest.isBefore(cutoff)
+                ? Duration.between(oldest, cutoff).toSeconds()
+                : 0);
+    }
+}
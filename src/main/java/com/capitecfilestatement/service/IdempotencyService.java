@@ -0,0 +1,243 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.entity.IdempotencyRecord;
+import com.capitecfilestatement.exception.BusinessException;
+import com.capitecfilestatement.exception.IdempotencyConflictException;
+import com.capitecfilestatement.exception.ValidationException;
+import com.capitecfilestatement.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Runs a request at most once per (customer, Idempotency-Key). The key is claimed with an IN_PROGRESS row,
+// the first successful response is stored on it and replayed to retries until the retention window ends.
+// Duplicates arriving on this instance while the first is still running wait for its result instead of
+// hitting the database; a duplicate on another instance gets 409 and retries.
+@Slf4j
+@Service
+public class IdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration retention;
+    private final Duration claimTimeout;
+    private final Duration waitTimeout;
+
+    private final Map<InFlightKey, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter replayedCounter;
+    private final Counter coalescedCounter;
+
+    public IdempotencyService(
+            IdempotencyRecordRepository idempotencyRecordRepository,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${idempotency.retention-hours:24}") long retentionHours,
+            @Value("${idempotency.claim-timeout-seconds:300}") long claimTimeoutSeconds,
+            @Value("${idempotency.wait-timeout-seconds:60}") long waitTimeoutSeconds) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.retention = Duration.ofHours(retentionHours);
+        this.claimTimeout = Duration.ofSeconds(claimTimeoutSeconds);
+        this.waitTimeout = Duration.ofSeconds(waitTimeoutSeconds);
+        this.replayedCounter = meterRegistry.counter("idempotency.replayed");
+        this.coalescedCounter = meterRegistry.counter("idempotency.coalesced");
+    }
+
+    @FunctionalInterface
+    public interface Action<T> {
+        T run() throws IOException;
+    }
+
+    public record Result<T>(T body, boolean replayed) {}
+
+    public <T> Result<T> execute(
+            UUID customerId,
+            String idempotencyKey,
+            String fingerprint,
+            Class<T> responseType,
+            Action<T> action) throws IOException {
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new ValidationException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+
+        InFlightKey key = new InFlightKey(customerId, idempotencyKey);
+        InFlight mine = new InFlight(fingerprint, new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            if (!running.fingerprint().equals(fingerprint)) {
+                throw new ValidationException("Idempotency-Key was already used for a different request");
+            }
+            coalescedCounter.increment();
+            return new Result<>(read(await(running.response()), responseType), true);
+        }
+
+        try {
+            String stored = transactionTemplate.execute(status -> claim(customerId, idempotencyKey, fingerprint));
+            if (stored != null) {
+                replayedCounter.increment();
+                mine.response().complete(stored);
+                return new Result<>(read(stored, responseType), true);
+            }
+
+            T body;
+            try {
+                body = action.run();
+            } catch (IOException | RuntimeException e) {
+                release(customerId, idempotencyKey);
+                throw e;
+            }
+
+            String json = write(body);
+            store(customerId, idempotencyKey, json);
+            mine.response().complete(json);
+            return new Result<>(body, false);
+        } catch (IOException | RuntimeException e) {
+            mine.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // SHA-256 over the parts that identify a request, compared when a key is reused
+    public static String fingerprint(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public int deleteExpired(LocalDateTime cutoff) {
+        Integer deleted = transactionTemplate.execute(status -> idempotencyRecordRepository.deleteExpired(cutoff));
+        return deleted != null ? deleted : 0;
+    }
+
+    // Returns the stored response to replay, or null once this request holds the key
+    private String claim(UUID customerId, String idempotencyKey, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        if (idempotencyRecordRepository.tryClaim(customerId, idempotencyKey, fingerprint, now, now.plus(claimTimeout)) == 1) {
+            return null;
+        }
+
+        IdempotencyRecord record = idempotencyRecordRepository.findForUpdate(customerId, idempotencyKey)
+                .orElseThrow(() -> new IdempotencyConflictException("A request with this Idempotency-Key is in progress"));
+
+        // A response past its window, or a claim whose owner died, can be taken over
+        if (record.getExpiresAt().isBefore(now)) {
+            record.setRequestFingerprint(fingerprint);
+            record.setStatus(IdempotencyRecord.Status.IN_PROGRESS);
+            record.setResponseBody(null);
+            record.setCreatedAt(now);
+            record.setExpiresAt(now.plus(claimTimeout));
+            return null;
+        }
+
+        if (!record.getRequestFingerprint().equals(fingerprint)) {
+            throw new ValidationException("Idempotency-Key was already used for a different request");
+        }
+
+        if (record.getStatus() == IdempotencyRecord.Status.COMPLETED) {
+            return record.getResponseBody();
+        }
+
+        throw new IdempotencyConflictException("A request with this Idempotency-Key is in progress");
+    }
+
+    private void store(UUID customerId, String idempotencyKey, String responseBody) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    idempotencyRecordRepository.findForUpdate(customerId, idempotencyKey).ifPresent(record -> {
+                        record.setStatus(IdempotencyRecord.Status.COMPLETED);
+                        record.setResponseBody(responseBody);
+                        record.setExpiresAt(LocalDateTime.now().plus(retention));
+                    }));
+        } catch (RuntimeException e) {
+            // The request itself succeeded; a retry after the claim times out will hit the duplicate checks
+            log.error("Failed to store idempotent response for key {} of customer {}", idempotencyKey, customerId, e);
+        }
+    }
+
+    // A failed request frees its key so the client can retry it
+    private void release(UUID customerId, String idempotencyKey) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    idempotencyRecordRepository.findForUpdate(customerId, idempotencyKey)
+                            .filter(record -> record.getStatus() == IdempotencyRecord.Status.IN_PROGRESS)
+                            .ifPresent(idempotencyRecordRepository::delete));
+        } catch (RuntimeException e) {
+            log.warn("Failed to release idempotency key {} of customer {}", idempotencyKey, customerId, e);
+        }
+    }
+
+    private String await(CompletableFuture<String> response) throws IOException {
+        try {
+            return response.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is in progress");
+        } catch (ExecutionException e) {
+            // Duplicates see the same outcome as the request they joined
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new BusinessException("Failed to process request");
+        }
+    }
+
+    private String write(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response", e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read stored response", e);
+        }
+    }
+
+    private record InFlightKey(UUID customerId, String idempotencyKey) {}
+
+    private record InFlight(String fingerprint, CompletableFuture<String> response) {}
+}
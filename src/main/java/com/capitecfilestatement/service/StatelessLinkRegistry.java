@@ -0,0 +1,56 @@
+package com.capitecfilestatement.service;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Replay guard for stateless download links. Spent nonces are grouped into one bucket per expiry minute, and a
+// nonce's expiry is part of the signed token, so a whole bucket can be dropped once its minute has passed.
+// State is per node: behind a load balancer a link is single-use per instance, not cluster-wide. Each spent nonce
+// remembers the client that spent it, the only one that may resume that download.
+@Component
+public class StatelessLinkRegistry {
+
+    private static final long BUCKET_SECONDS = 60;
+
+    private final Map<Long, Map<UUID, Spend>> spentByExpiryMinute = new ConcurrentHashMap<>();
+
+    public StatelessLinkRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("download.links.stateless.spent", spentByExpiryMinute,
+                        m -> m.values().stream().mapToInt(Map::size).sum())
+                .register(meterRegistry);
+    }
+
+    // True exactly once per nonce, for as long as the nonce's link has not expired
+    public boolean trySpend(UUID nonce, Instant expiresAt, String ipAddress) {
+        return spentByExpiryMinute
+                .computeIfAbsent(expiresAt.getEpochSecond() / BUCKET_SECONDS, minute -> new ConcurrentHashMap<>())
+                .putIfAbsent(nonce, new Spend(ipAddress, new AtomicInteger())) == null;
+    }
+
+    // True if the nonce was spent by this client and has resumed fewer than maxResumes times; counts the resume
+    public boolean tryResume(UUID nonce, Instant expiresAt, String ipAddress, int maxResumes) {
+        Map<UUID, Spend> spent = spentByExpiryMinute.get(expiresAt.getEpochSecond() / BUCKET_SECONDS);
+        Spend spend = spent == null ? null : spent.get(nonce);
+        if (spend == null || spend.ipAddress() == null || !Objects.equals(spend.ipAddress(), ipAddress)) {
+            return false;
+        }
+        return spend.resumes().getAndUpdate(n -> n < maxResumes ? n + 1 : n) < maxResumes;
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void purgeExpired() {
+        // Keep one extra bucket so a request verified just before expiry still finds its nonce
+        long oldestLive = Instant.now().getEpochSecond() / BUCKET_SECONDS - 1;
+        spentByExpiryMinute.keySet().removeIf(minute -> minute < oldestLive);
+    }
+
+    private record Spend(String ipAddress, AtomicInteger resumes) {}
+}
@@ -0,0 +1,34 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.exception.ValidationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+// Opaque keyset position for statement listing: base64url("<statementPeriod>|<id>") of the last row returned
+record StatementCursor(String statementPeriod, UUID id) {
+
+    static String encode(String statementPeriod, UUID id) {
+        String raw = statementPeriod + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static StatementCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            if (separator <= 0) {
+                throw new ValidationException("Invalid cursor");
+            }
+            // UUID.fromString accepts short groups, so a truncated cursor would otherwise name another row
+            String id = raw.substring(separator + 1);
+            UUID uuid = UUID.fromString(id);
+            if (!uuid.toString().equals(id)) {
+                throw new ValidationException("Invalid cursor");
+            }
+            return new StatementCursor(raw.substring(0, separator), uuid);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Invalid cursor");
+        }
+    }
+}
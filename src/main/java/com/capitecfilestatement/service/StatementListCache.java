@@ -0,0 +1,194 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.dto.StatementListVersion;
+import com.capitecfilestatement.dto.StatementPage;
+import com.capitecfilestatement.exception.BusinessException;
+import com.capitecfilestatement.repository.AccountStatementRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+// Serialized GET /api/statements responses per customer and query. Every key carries the customer's list version
+// (statement count and latest update) as read from the database, so a change made through any node retires the
+// cached pages everywhere without an invalidation message. The version and, on a miss, the page are read in one
+// repeatable-read transaction, so a cached page is never filed under a version it does not match.
+// The last version read is kept for version-ttl-ms, so revalidations and cached pages within that window are
+// answered without the database. Writes through this node clear it once they commit; writes through other nodes
+// show up when it expires.
+@Slf4j
+@Component
+public class StatementListCache {
+
+    private final AccountStatementRepository statementRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate snapshot;
+
+    private final Cache<ListingKey, Listing> listings;
+    private final Cache<UUID, KnownVersion> versions;
+    private final Counter invalidationCounter;
+
+    public StatementListCache(
+            AccountStatementRepository statementRepository,
+            ObjectMapper objectMapper,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${statement-list.cache.max-size:20000}") long maxSize,
+            @Value("${statement-list.cache.ttl-seconds:300}") long ttlSeconds,
+            @Value("${statement-list.cache.version-ttl-ms:2000}") long versionTtlMillis) {
+        this.statementRepository = statementRepository;
+        this.objectMapper = objectMapper;
+        this.snapshot = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.snapshot.setReadOnly(true);
+        this.snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        // Pages under an old version are never hit again, the TTL only bounds how long they take up memory
+        this.listings = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, listings, "statement_listings");
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(versionTtlMillis))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "statement_list_versions");
+        this.invalidationCounter = Counter.builder("statement.list.cache.invalidations")
+                .description("Statement list versions cleared by writes on this instance")
+                .register(meterRegistry);
+    }
+
+    public Listing getListing(
+            UUID customerId,
+            String cursor,
+            String fromPeriod,
+            String toPeriod,
+            Integer limit,
+            String ifNoneMatch,
+            Supplier<StatementPage> pageLoader) {
+        KnownVersion known = versions.getIfPresent(customerId);
+        if (known != null && known.version() != null) {
+            String eTag = eTagOf(known.version());
+            if (matches(ifNoneMatch, eTag)) {
+                return new Listing(null, eTag, lastModifiedOf(known.version()), null);
+            }
+            Listing cached = listings.getIfPresent(new ListingKey(customerId, eTag, cursor, fromPeriod, toPeriod, limit));
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long readAt = System.nanoTime();
+        return snapshot.execute(status -> {
+            StatementListVersion version = statementRepository.findListVersion(customerId);
+            remember(customerId, new KnownVersion(version, readAt));
+            String eTag = eTagOf(version);
+            long lastModified = lastModifiedOf(version);
+
+            // A client revalidating only needs the version, not the page
+            if (matches(ifNoneMatch, eTag)) {
+                return new Listing(null, eTag, lastModified, null);
+            }
+
+            ListingKey key = new ListingKey(customerId, eTag, cursor, fromPeriod, toPeriod, limit);
+            Listing cached = listings.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            StatementPage page = pageLoader.get();
+            Listing listing;
+            try {
+                listing = new Listing(objectMapper.writeValueAsBytes(page.getItems()), eTag, lastModified, page.getNextCursor());
+            } catch (JsonProcessingException e) {
+                throw new BusinessException("Failed to serialize statements");
+            }
+
+            listings.put(key, listing);
+            return listing;
+        });
+    }
+
+    // Called by writes to the customer's statements; takes effect when the surrounding transaction commits
+    public void invalidate(UUID customerId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(customerId);
+                }
+            });
+        } else {
+            evict(customerId);
+        }
+    }
+
+    private void evict(UUID customerId) {
+        // A marker rather than a removal, so a read that started before the commit cannot put its older version back
+        remember(customerId, new KnownVersion(null, System.nanoTime()));
+        invalidationCounter.increment();
+    }
+
+    // Keeps whichever of the two was read or invalidated last
+    private void remember(UUID customerId, KnownVersion candidate) {
+        versions.asMap().compute(customerId, (id, current) ->
+                current != null && current.atNanos() - candidate.atNanos() > 0 ? current : candidate);
+    }
+
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = stripWeak(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String eTagOf(StatementListVersion version) {
+        return "W/\"" + version.statementCount() + "-" + lastModifiedOf(version) + "\"";
+    }
+
+    private static long lastModifiedOf(StatementListVersion version) {
+        return version.lastUpdatedAt() == null
+                ? 0L
+                : version.lastUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private record ListingKey(
+            UUID customerId,
+            String version,
+            String cursor,
+            String fromPeriod,
+            String toPeriod,
+            Integer limit) {}
+
+    // version is null once a write on this node has made it stale
+    private record KnownVersion(StatementListVersion version, long atNanos) {}
+
+    // body is null when the caller's If-None-Match was satisfied without loading the page
+    public record Listing(byte[] body, String eTag, long lastModified, String nextCursor) {}
+}
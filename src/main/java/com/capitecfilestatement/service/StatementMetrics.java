@@ -0,0 +1,131 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.exception.InvalidTokenException;
+import com.capitecfilestatement.exception.ResourceNotFoundException;
+import com.capitecfilestatement.exception.ValidationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Domain metrics for the statement hot paths. Each operation is split into phases timed back to back, so a
+// p99 regression can be pinned on validation, storage, the database or the audit write rather than only
+// showing up in http_server_requests.
+@Component
+public class StatementMetrics {
+
+    public enum Operation { UPLOAD, GENERATE_LINK, DOWNLOAD, DELETE }
+
+    public enum FailureCause { VALIDATION, DUPLICATE_PERIOD, TOKEN_LIMIT, STORAGE_ERROR, CLIENT_ABORT, NOT_FOUND, INVALID_TOKEN, OTHER }
+
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(60);
+
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary uploadSize;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+
+    public StatementMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.uploadSize = DistributionSummary.builder("statement.upload.size")
+                .description("Size of uploaded statements")
+                .baseUnit("bytes")
+                .serviceLevelObjectives(256 * 1024, 1024 * 1024, 5 * 1024 * 1024, 10 * 1024 * 1024,
+                        50 * 1024 * 1024, 100 * 1024 * 1024)
+                .register(meterRegistry);
+    }
+
+    public Phases start(Operation operation) {
+        return new Phases(operation);
+    }
+
+    public void recordUploadSize(long sizeBytes) {
+        uploadSize.record(sizeBytes);
+    }
+
+    private Timer phaseTimer(Operation operation, String phase) {
+        return timers.computeIfAbsent(tag(operation) + "/" + phase, key -> Timer.builder("statement.operation.phase")
+                .description("Time spent in one phase of a statement operation")
+                .tag("operation", tag(operation))
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(meterRegistry));
+    }
+
+    private Timer operationTimer(Operation operation, String outcome) {
+        return timers.computeIfAbsent(tag(operation) + "#" + outcome, key -> Timer.builder("statement.operation")
+                .description("End to end time of a statement operation, excluding the transaction commit")
+                .tag("operation", tag(operation))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(meterRegistry));
+    }
+
+    private Counter failureCounter(Operation operation, FailureCause cause) {
+        return failures.computeIfAbsent(tag(operation) + "/" + cause, key -> Counter.builder("statement.operation.failures")
+                .tag("operation", tag(operation))
+                .tag("cause", cause.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry));
+    }
+
+    private static String tag(Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+
+    // Clock for one operation: mark() closes the phase that just ran and starts the next
+    public final class Phases {
+        private final Operation operation;
+        private final long started;
+        private long phaseStarted;
+        private FailureCause cause;
+
+        private Phases(Operation operation) {
+            this.operation = operation;
+            this.started = System.nanoTime();
+            this.phaseStarted = started;
+        }
+
+        public void mark(String phase) {
+            long now = System.nanoTime();
+            phaseTimer(operation, phase).record(Duration.ofNanos(now - phaseStarted));
+            phaseStarted = now;
+        }
+
+        // Names the cause of a failure the exception type alone cannot tell apart
+        public void cause(FailureCause cause) {
+            this.cause = cause;
+        }
+
+        public void succeeded() {
+            operationTimer(operation, "success").record(Duration.ofNanos(System.nanoTime() - started));
+        }
+
+        public void failed(Throwable failure) {
+            operationTimer(operation, "failure").record(Duration.ofNanos(System.nanoTime() - started));
+            failureCounter(operation, cause != null ? cause : classify(failure)).increment();
+        }
+
+        private FailureCause classify(Throwable failure) {
+            if (failure instanceof ValidationException) {
+                return FailureCause.VALIDATION;
+            }
+            if (failure instanceof ResourceNotFoundException) {
+                return FailureCause.NOT_FOUND;
+            }
+            if (failure instanceof InvalidTokenException) {
+                return FailureCause.INVALID_TOKEN;
+            }
+            return FailureCause.OTHER;
+        }
+    }
+}
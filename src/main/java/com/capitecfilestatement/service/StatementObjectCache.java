@@ -0,0 +1,376 @@
+package com.capitecfilestatement.service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded on-disk LRU of statement objects for proxy downloads. Files are named
+// <sha256(s3Key)>.<sha256(content)> so an entry only serves the exact bytes the statement row expects,
+// and the index can be rebuilt from the directory after a restart.
+@Slf4j
+@Component
+public class StatementObjectCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Eviction frees down to this fraction of the budget so fills are not refused right after a run
+    private static final double LOW_WATERMARK = 0.9;
+
+    private final boolean enabled;
+    private final boolean fillOnUpload;
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final long maxAgeMillis;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter bytesSavedCounter;
+    private final Counter evictionCounter;
+
+    public StatementObjectCache(
+            MeterRegistry meterRegistry,
+            @Value("${statement-object-cache.enabled:false}") boolean enabled,
+            @Value("${statement-object-cache.fill-on-upload:true}") boolean fillOnUpload,
+            @Value("${statement-object-cache.directory:data/statement-cache}") String directory,
+            @Value("${statement-object-cache.max-size-bytes:1073741824}") long maxSizeBytes,
+            @Value("${statement-object-cache.max-age-hours:72}") long maxAgeHours) {
+        this.enabled = enabled;
+        this.fillOnUpload = fillOnUpload;
+        this.directory = Path.of(directory).toAbsolutePath();
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxAgeMillis = Duration.ofHours(maxAgeHours).toMillis();
+
+        Gauge.builder("statement.object.cache.size.bytes", totalBytes, AtomicLong::get)
+                .description("Bytes of statement objects held on local disk")
+                .register(meterRegistry);
+        Gauge.builder("statement.object.cache.entries", index, Map::size)
+                .description("Statement objects held on local disk")
+                .register(meterRegistry);
+        this.hitCounter = meterRegistry.counter("statement.object.cache.hits");
+        this.missCounter = meterRegistry.counter("statement.object.cache.misses");
+        this.bytesSavedCounter = meterRegistry.counter("statement.object.cache.bytes.saved");
+        this.evictionCounter = meterRegistry.counter("statement.object.cache.evictions");
+    }
+
+    @PostConstruct
+    void loadIndex() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int separator = name.indexOf('.');
+                if (name.endsWith(TEMP_SUFFIX) || separator < 0) {
+                    // Leftover of a fill that never completed
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+
+                long size = Files.size(file);
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                index.put(name.substring(0, separator),
+                        new Entry(file, name.substring(separator + 1), size, lastModified));
+                totalBytes.addAndGet(size);
+            }
+        }
+
+        log.info("Statement object cache loaded {} entries ({} bytes) from {}", index.size(), totalBytes.get(), directory);
+    }
+
+    // Writes the requested byte range of a cached object to out; false means the caller has to go to storage
+    public boolean serve(String s3Key, String checksumSha256, long start, long endInclusive, OutputStream out) throws IOException {
+        if (!enabled) {
+            return false;
+        }
+
+        String keyHash = hashKey(s3Key);
+        Entry entry = index.get(keyHash);
+        if (entry == null || !entry.checksumHex.equals(toHex(checksumSha256))) {
+            missCounter.increment();
+            return false;
+        }
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(entry.path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            // Evicted between the index lookup and the open
+            missCounter.increment();
+            return false;
+        }
+
+        long count = endInclusive - start + 1;
+        try (channel) {
+            if (channel.size() != entry.size) {
+                remove(keyHash, entry);
+                missCounter.increment();
+                return false;
+            }
+
+            entry.lastAccessMillis = System.currentTimeMillis();
+
+            // The servlet stream is not a file descriptor, so this is a single kernel-to-user copy rather than sendfile
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("Cached statement object truncated: " + entry.path);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+
+        hitCounter.increment();
+        bytesSavedCounter.increment(count);
+        return true;
+    }
+
+    // Starts caching an object that is about to be streamed from storage; the returned fill is a no-op
+    // when the cache is off or full, and nothing is admitted unless the streamed bytes match the checksum
+    public Fill beginFill(String s3Key, String checksumSha256, long sizeBytes) {
+        if (!enabled || sizeBytes > maxSizeBytes || totalBytes.get() + sizeBytes > maxSizeBytes) {
+            return Fill.NONE;
+        }
+
+        Path temp = directory.resolve(UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            return new Fill(this, hashKey(s3Key), toHex(checksumSha256), temp,
+                    new BufferedOutputStream(Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW)));
+        } catch (IOException e) {
+            log.warn("Failed to start caching statement object {}", s3Key, e);
+            return Fill.NONE;
+        }
+    }
+
+    public void admitUpload(String s3Key, String checksumSha256, long sizeBytes, InputStreamSource source) {
+        if (!fillOnUpload) {
+            return;
+        }
+
+        Fill fill = beginFill(s3Key, checksumSha256, sizeBytes);
+        if (fill == Fill.NONE) {
+            return;
+        }
+
+        try (fill; InputStream in = source.getInputStream()) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                fill.write(buffer, 0, read);
+            }
+            fill.complete();
+        } catch (IOException e) {
+            log.warn("Failed to cache uploaded statement object {}", s3Key, e);
+        }
+    }
+
+    public void remove(String s3Key) {
+        if (!enabled) {
+            return;
+        }
+        String keyHash = hashKey(s3Key);
+        Entry entry = index.get(keyHash);
+        if (entry != null) {
+            remove(keyHash, entry);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${statement-object-cache.eviction-interval-ms:60000}")
+    public void evict() {
+        if (!enabled) {
+            return;
+        }
+
+        long expiredBefore = System.currentTimeMillis() - maxAgeMillis;
+        List<Map.Entry<String, Entry>> candidates = new ArrayList<>(index.entrySet());
+        for (Map.Entry<String, Entry> candidate : candidates) {
+            if (candidate.getValue().createdMillis < expiredBefore) {
+                remove(candidate.getKey(), candidate.getValue());
+            }
+        }
+
+        long target = (long) (maxSizeBytes * LOW_WATERMARK);
+        if (totalBytes.get() <= target) {
+            return;
+        }
+
+        candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccessMillis));
+        for (Map.Entry<String, Entry> candidate : candidates) {
+            if (totalBytes.get() <= target) {
+                break;
+            }
+            remove(candidate.getKey(), candidate.getValue());
+        }
+    }
+
+    private void admit(String keyHash, String checksumHex, Path temp, long size) throws IOException {
+        Path path = directory.resolve(keyHash + "." + checksumHex);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        Entry previous = index.put(keyHash, new Entry(path, checksumHex, size, System.currentTimeMillis()));
+        totalBytes.addAndGet(size);
+        if (previous != null) {
+            totalBytes.addAndGet(-previous.size);
+            if (!previous.path.equals(path)) {
+                Files.deleteIfExists(previous.path);
+            }
+        }
+    }
+
+    private void remove(String keyHash, Entry entry) {
+        if (!index.remove(keyHash, entry)) {
+            return;
+        }
+        totalBytes.addAndGet(-entry.size);
+        evictionCounter.increment();
+        try {
+            // Readers that already opened the file keep streaming from the unlinked inode
+            Files.deleteIfExists(entry.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached statement object {}", entry.path, e);
+        }
+    }
+
+    private static String hashKey(String s3Key) {
+        return HexFormat.of().formatHex(newSha256().digest(s3Key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Checksums are stored base64 encoded, which is not safe in file names
+    private static String toHex(String checksumSha256) {
+        return HexFormat.of().formatHex(Base64.getDecoder().decode(checksumSha256));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Entry {
+        private final Path path;
+        private final String checksumHex;
+        private final long size;
+        private final long createdMillis;
+        private volatile long lastAccessMillis;
+
+        private Entry(Path path, String checksumHex, long size, long createdMillis) {
+            this.path = path;
+            this.checksumHex = checksumHex;
+            this.size = size;
+            this.createdMillis = createdMillis;
+            this.lastAccessMillis = createdMillis;
+        }
+    }
+
+    // Cache writes never fail the download they piggyback on; a failed fill is simply dropped
+    public static class Fill implements Closeable {
+
+        public static final Fill NONE = new Fill(null, null, null, null, null);
+
+        private final StatementObjectCache cache;
+        private final String keyHash;
+        private final String checksumHex;
+        private final Path temp;
+        private final OutputStream out;
+        private final MessageDigest digest;
+        private long size;
+        private boolean failed;
+        private boolean admitted;
+
+        private Fill(StatementObjectCache cache, String keyHash, String checksumHex, Path temp, OutputStream out) {
+            this.cache = cache;
+            this.keyHash = keyHash;
+            this.checksumHex = checksumHex;
+            this.temp = temp;
+            this.out = out;
+            this.digest = out != null ? newSha256() : null;
+        }
+
+        public void write(byte[] buffer, int offset, int length) {
+            if (out == null || failed) {
+                return;
+            }
+            try {
+                out.write(buffer, offset, length);
+                digest.update(buffer, offset, length);
+                size += length;
+            } catch (IOException e) {
+                log.warn("Failed to write cached statement object {}", temp, e);
+                failed = true;
+            }
+        }
+
+        public void complete() {
+            if (out == null || failed) {
+                return;
+            }
+            try {
+                out.close();
+                if (!HexFormat.of().formatHex(digest.digest()).equals(checksumHex)) {
+                    log.warn("Statement object for cache entry {} does not match its checksum, not caching", keyHash);
+                    return;
+                }
+                cache.admit(keyHash, checksumHex, temp, size);
+                admitted = true;
+            } catch (IOException e) {
+                log.warn("Failed to admit cached statement object {}", keyHash, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (out == null || admitted) {
+                return;
+            }
+            try {
+                out.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                log.warn("Failed to clean up partial cache file {}", temp, e);
+            }
+        }
+    }
+}
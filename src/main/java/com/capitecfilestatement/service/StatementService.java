@@ -3,27 +3,34 @@ import com.capitecfilestatement.entity.*;
 import com.capitecfilestatement.repository.*;
 import com.capitecfilestatement.dto.*;
 import com.capitecfilestatement.exception.*;
+import com.capitecfilestatement.security.DownloadTokenSigner;
+import com.capitecfilestatement.storage.StatementStorage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
-import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
@@ -33,19 +40,52 @@ public class StatementService {
     private final AccountStatementRepository statementRepository;
     private final CustomerRepository customerRepository;
     private final DownloadTokenRepository downloadTokenRepository;
-    private final AuditLogRepository auditLogRepository;
-    private final S3Client s3Client;
-    private final S3Presigner s3Presigner;
-
-    @Value("${aws.s3.bucket-name}")
-    private String bucketName;
+    private final AuditLogWriter auditLogWriter;
+    private final UploadReservationRepository uploadReservationRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final StatementStorage statementStorage;
+    private final StorageDeletionWorker storageDeletionWorker;
+    private final BulkTransferExecutor bulkTransferExecutor;
+    private final UploadAdmissionController uploadAdmissionController;
+    private final TransactionTemplate transactionTemplate;
+    private final DownloadTokenSigner downloadTokenSigner;
+    private final StatelessLinkRegistry statelessLinkRegistry;
+    private final ActiveLinkTracker activeLinkTracker;
+    private final StatementListCache statementListCache;
+    private final StatementObjectCache statementObjectCache;
+    private final StatementMetrics statementMetrics;
 
     @Value("${security.download-link.expiration-minutes}")
     private int downloadLinkExpirationMinutes;
 
+    @Value("${statement-list.default-page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${statement-list.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${upload-reservation.expiration-minutes:15}")
+    private int uploadReservationExpirationMinutes;
+
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
-    private static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("application/pdf");
+    static final Set<String> ALLOWED_CONTENT_TYPES = Set.of("application/pdf");
     private static final int MAX_ACTIVE_TOKENS_PER_CUSTOMER = 5;
+    private static final String PDF_HEADER = "%PDF";
+    private static final int MAX_BULK_ITEMS = 500;
+
+    public enum DownloadLinkMode { TABLE, STATELESS }
+
+    @Value("${download-link.mode:TABLE}")
+    private DownloadLinkMode downloadLinkMode;
+
+    @Value("${download-link.active-tracker.enabled:true}")
+    private boolean activeLinkTrackerEnabled;
+
+    @Value("${download-link.proxy.buffer-bytes:65536}")
+    private int proxyBufferBytes;
+
+    @Value("${download-link.proxy.max-resumes:3}")
+    private int maxDownloadResumes;
 
     @Transactional
     public StatementUploadResponse uploadStatement(
@@ -54,6 +94,24 @@ public class StatementService {
             String statementPeriod,
             String ipAddress) throws IOException {
 
+        StatementMetrics.Phases phases = statementMetrics.start(StatementMetrics.Operation.UPLOAD);
+        try {
+            StatementUploadResponse response = uploadStatement(customerId, file, statementPeriod, ipAddress, phases);
+            phases.succeeded();
+            return response;
+        } catch (IOException | RuntimeException e) {
+            phases.failed(e);
+            throw e;
+        }
+    }
+
+    private StatementUploadResponse uploadStatement(
+            UUID customerId,
+            MultipartFile file,
+            String statementPeriod,
+            String ipAddress,
+            StatementMetrics.Phases phases) throws IOException {
+
         // Validate customer
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
@@ -64,38 +122,60 @@ public class StatementService {
 
         // Validate file
         validateFile(file);
+        statementMetrics.recordUploadSize(file.getSize());
+        phases.mark("validate");
 
         // Check for duplicate period
         if (statementRepository.findByCustomerIdAndPeriod(customerId, statementPeriod).isPresent()) {
+            phases.cause(StatementMetrics.FailureCause.DUPLICATE_PERIOD);
             throw new BusinessException("Statement already exists for period: " + statementPeriod);
         }
 
+        if (uploadReservationRepository.existsActiveReservation(customerId, statementPeriod, LocalDateTime.now())
+                || uploadSessionRepository.existsActiveSession(customerId, statementPeriod, LocalDateTime.now())) {
+            phases.cause(StatementMetrics.FailureCause.DUPLICATE_PERIOD);
+            throw new BusinessException("An upload is already in progress for period: " + statementPeriod);
+        }
+        phases.mark("duplicate_check");
+
         // Generate S3 key
         String s3Key = generateS3Key(customerId, statementPeriod, file.getOriginalFilename());
 
-        // Calculate checksum
-        byte[] fileBytes = file.getBytes();
-        String checksum = calculateSHA256(fileBytes);
-
-        // Upload to S3 with encryption
-        uploadToS3(s3Key, fileBytes, file.getContentType());
+        // Stream to storage, checking the PDF header and hashing in the same pass, so the hash is part of this phase
+        // A read failure on the client's body surfaces from inside put, so it is told apart by the stream it came from
+        StatementStorage.ObjectInfo uploaded;
+        ClientInputStream client = new ClientInputStream(file.getInputStream());
+        try (InputStream in = new BufferedInputStream(client)) {
+            requirePdfHeader(in);
+            uploaded = statementStorage.put(s3Key, in, file.getContentType(), file.getSize());
+        } catch (BusinessException | IOException e) {
+            phases.cause(client.failed
+                    ? StatementMetrics.FailureCause.CLIENT_ABORT
+                    : StatementMetrics.FailureCause.STORAGE_ERROR);
+            throw e;
+        }
+        phases.mark("storage_put");
 
         // Save metadata
         AccountStatement statement = AccountStatement.builder()
                 .customer(customer)
                 .s3Key(s3Key)
                 .fileName(file.getOriginalFilename())
-                .fileSizeBytes(file.getSize())
+                .fileSizeBytes(uploaded.sizeBytes())
                 .statementPeriod(statementPeriod)
                 .contentType(file.getContentType())
-                .checksumSha256(checksum)
+                .checksumSha256(uploaded.checksumSha256())
                 .encrypted(true)
                 .build();
 
         statement = statementRepository.save(statement);
+        phases.mark("db_save");
+        statementListCache.invalidate(customerId);
+        statementObjectCache.admitUpload(s3Key, uploaded.checksumSha256(), uploaded.sizeBytes(), file);
+        phases.mark("cache");
 
         // Audit log
-        auditLogRepository.save(AuditLog.builder()
+        auditLogWriter.record(AuditLog.builder()
                 .customer(customer)
                 .action("UPLOAD")
                 .resourceType("ACCOUNT_STATEMENT")
@@ -103,147 +183,736 @@ public class StatementService {
                 .ipAddress(ipAddress)
                 .details("Uploaded statement for period: " + statementPeriod)
                 .build());
+        phases.mark("audit");
 
         log.info("Statement uploaded successfully: {} for customer: {}", statement.getId(), customerId);
 
         return mapToUploadResponse(statement);
     }
 
+    // Storage transfers run in parallel on the bulk executor outside any transaction, then the rows for every
+    // stored file are inserted in one batched transaction. Items fail individually, never the whole request.
+    public List<BulkItemResult<StatementUploadResponse>> uploadStatements(
+            UUID customerId,
+            List<MultipartFile> files,
+            List<String> statementPeriods,
+            String ipAddress) {
+
+        if (files.size() != statementPeriods.size()) {
+            throw new ValidationException("Each file needs exactly one statement period");
+        }
+        if (files.size() > MAX_BULK_ITEMS) {
+            throw new ValidationException("At most " + MAX_BULK_ITEMS + " statements per request");
+        }
+
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
+
+        if (!customer.getActive()) {
+            throw new BusinessException("Customer account is inactive");
+        }
+
+        // Periods already stored or reserved, plus the ones claimed earlier in this request
+        Set<String> takenPeriods = new HashSet<>(statementRepository.findExistingPeriods(customerId, statementPeriods));
+        takenPeriods.addAll(uploadReservationRepository.findActivePeriods(customerId, statementPeriods, LocalDateTime.now()));
+        takenPeriods.addAll(uploadSessionRepository.findActivePeriods(customerId, statementPeriods, LocalDateTime.now()));
+
+        List<BulkItemResult<StatementUploadResponse>> results = new ArrayList<>(Collections.nCopies(files.size(), null));
+        Map<Integer, CompletableFuture<PendingUpload>> transfers = new LinkedHashMap<>();
+
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            String statementPeriod = statementPeriods.get(i);
+            try {
+                validateFile(file);
+            } catch (ValidationException e) {
+                results.set(i, BulkItemResult.failed(i, null, e.getMessage()));
+                continue;
+            }
+
+            if (!takenPeriods.add(statementPeriod)) {
+                results.set(i, BulkItemResult.failed(i, null,
+                        "Statement already exists or is being uploaded for period: " + statementPeriod));
+                continue;
+            }
+
+            String s3Key = generateS3Key(customerId, statementPeriod, file.getOriginalFilename());
+            int index = i;
+            transfers.put(i, bulkTransferExecutor.submit(() -> new PendingUpload(
+                    index, s3Key, file.getOriginalFilename(), statementPeriod, file.getContentType(),
+                    storeUpload(s3Key, file))));
+        }
+
+        List<PendingUpload> stored = new ArrayList<>();
+        transfers.forEach((index, transfer) -> {
+            try {
+                stored.add(transfer.join());
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                String message = cause instanceof BusinessException
+                        || cause instanceof ValidationException
+                        || cause instanceof ServiceBusyException
+                        ? cause.getMessage()
+                        : "Failed to upload file to storage";
+                log.warn("Bulk upload item {} failed for customer: {}", index, customerId, cause);
+                results.set(index, BulkItemResult.failed(index, null, message));
+            }
+        });
+
+        if (!stored.isEmpty()) {
+            persistUploads(customer, stored, ipAddress, results);
+            statementListCache.invalidate(customerId);
+        }
+
+        return results;
+    }
+
+    private StatementStorage.ObjectInfo storeUpload(String s3Key, MultipartFile file) {
+        try (UploadAdmissionController.Permit permit = uploadAdmissionController.admitUpload(file.getSize());
+             InputStream in = new BufferedInputStream(file.getInputStream())) {
+            requirePdfHeader(in);
+            StatementStorage.ObjectInfo stored = statementStorage.put(s3Key, in, file.getContentType(), file.getSize());
+            statementObjectCache.admitUpload(s3Key, stored.checksumSha256(), stored.sizeBytes(), file);
+            return stored;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void persistUploads(
+            Customer customer,
+            List<PendingUpload> stored,
+            String ipAddress,
+            List<BulkItemResult<StatementUploadResponse>> results) {
+        try {
+            List<AccountStatement> saved = transactionTemplate.execute(status -> saveUploads(customer, stored, ipAddress));
+            for (int i = 0; i < stored.size(); i++) {
+                AccountStatement statement = saved.get(i);
+                results.set(stored.get(i).index(),
+                        BulkItemResult.succeeded(stored.get(i).index(), statement.getId(), mapToUploadResponse(statement)));
+            }
+            return;
+        } catch (DataAccessException e) {
+            log.warn("Batched insert of {} uploaded statements failed, retrying one by one", stored.size(), e);
+        }
+
+        // A period taken concurrently fails the whole batch on the unique constraint, so the rest go in one by one
+        for (PendingUpload upload : stored) {
+            try {
+                AccountStatement statement = transactionTemplate.execute(status ->
+                        saveUploads(customer, List.of(upload), ipAddress).get(0));
+                results.set(upload.index(),
+                        BulkItemResult.succeeded(upload.index(), statement.getId(), mapToUploadResponse(statement)));
+            } catch (DataAccessException e) {
+                storageDeletionWorker.enqueue(upload.s3Key());
+                results.set(upload.index(), BulkItemResult.failed(upload.index(), null,
+                        "Statement already exists for period: " + upload.statementPeriod()));
+            }
+        }
+    }
+
+    private List<AccountStatement> saveUploads(Customer customer, List<PendingUpload> uploads, String ipAddress) {
+        List<AccountStatement> statements = statementRepository.saveAll(uploads.stream()
+                .map(upload -> AccountStatement.builder()
+                        .customer(customer)
+                        .s3Key(upload.s3Key())
+                        .fileName(upload.fileName())
+                        .fileSizeBytes(upload.stored().sizeBytes())
+                        .statementPeriod(upload.statementPeriod())
+                        .contentType(upload.contentType())
+                        .checksumSha256(upload.stored().checksumSha256())
+                        .encrypted(true)
+                        .build())
+                .toList());
+        // Surface constraint violations here rather than at commit, where they cannot be told apart
+        statementRepository.flush();
+
+        for (AccountStatement statement : statements) {
+            auditLogWriter.record(AuditLog.builder()
+                    .customer(customer)
+                    .action("UPLOAD")
+                    .resourceType("ACCOUNT_STATEMENT")
+                    .resourceId(statement.getId())
+                    .ipAddress(ipAddress)
+                    .details("Uploaded statement for period: " + statement.getStatementPeriod())
+                    .build());
+        }
+
+        return statements;
+    }
+
+    private record PendingUpload(
+            int index,
+            String s3Key,
+            String fileName,
+            String statementPeriod,
+            String contentType,
+            StatementStorage.ObjectInfo stored) {}
+
+    @Transactional
+    public UploadReservationResponse reserveUpload(UUID customerId, UploadReservationRequest request) {
+
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
+
+        if (!customer.getActive()) {
+            throw new BusinessException("Customer account is inactive");
+        }
+
+        if (request.getFileSizeBytes() > MAX_FILE_SIZE) {
+            throw new ValidationException("File size exceeds maximum allowed size");
+        }
+
+        if (!ALLOWED_CONTENT_TYPES.contains(request.getContentType())) {
+            throw new ValidationException("Only PDF files are allowed");
+        }
+
+        String statementPeriod = request.getStatementPeriod();
+        if (statementRepository.findByCustomerIdAndPeriod(customerId, statementPeriod).isPresent()) {
+            throw new BusinessException("Statement already exists for period: " + statementPeriod);
+        }
+
+        if (uploadSessionRepository.existsActiveSession(customerId, statementPeriod, LocalDateTime.now())) {
+            throw new BusinessException("An upload is already in progress for period: " + statementPeriod);
+        }
+
+        // An expired reservation still holds the slot until the reaper gets to it, release it here
+        uploadReservationRepository.findByCustomerIdAndPeriod(customerId, statementPeriod)
+                .ifPresent(existing -> {
+                    if (existing.getExpiresAt().isAfter(LocalDateTime.now())) {
+                        throw new BusinessException("An upload is already in progress for period: " + statementPeriod);
+                    }
+                    storageDeletionWorker.enqueue(existing.getS3Key());
+                    uploadReservationRepository.delete(existing);
+                    uploadReservationRepository.flush();
+                });
+
+        String s3Key = generateS3Key(customerId, statementPeriod, request.getFileName());
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(uploadReservationExpirationMinutes);
+
+        UploadReservation reservation = uploadReservationRepository.save(UploadReservation.builder()
+                .customer(customer)
+                .statementPeriod(statementPeriod)
+                .s3Key(s3Key)
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .fileSizeBytes(request.getFileSizeBytes())
+                .checksumSha256(request.getChecksumSha256())
+                .expiresAt(expiresAt)
+                .build());
+
+        StatementStorage.PresignedUpload presignedUpload = statementStorage.presignUpload(
+                s3Key,
+                request.getContentType(),
+                request.getFileSizeBytes(),
+                request.getChecksumSha256(),
+                Duration.ofMinutes(uploadReservationExpirationMinutes));
+
+        log.info("Upload reserved: {} for customer: {} period: {}", reservation.getId(), customerId, statementPeriod);
+
+        UploadReservationResponse response = new UploadReservationResponse();
+        response.setReservationId(reservation.getId());
+        response.setUploadUrl(presignedUpload.url());
+        response.setRequiredHeaders(presignedUpload.requiredHeaders());
+        response.setExpiresAt(expiresAt);
+        return response;
+    }
+
+    @Transactional
+    public StatementUploadResponse finalizeUpload(UUID customerId, UUID reservationId, String ipAddress) {
+
+        UploadReservation reservation = uploadReservationRepository
+                .findByIdAndCustomerId(reservationId, customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload reservation not found"));
+
+        if (reservation.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new BusinessException("Upload reservation has expired");
+        }
+
+        // Verify what actually landed in storage against what was reserved
+        StatementStorage.ObjectInfo head = statementStorage.head(reservation.getS3Key())
+                .orElseThrow(() -> new BusinessException("File has not been uploaded yet"));
+
+        if (reservation.getFileSizeBytes() != head.sizeBytes()) {
+            throw new ValidationException("Uploaded file size does not match reservation");
+        }
+
+        if (!ALLOWED_CONTENT_TYPES.contains(head.contentType())) {
+            throw new ValidationException("Only PDF files are allowed");
+        }
+
+        if (!reservation.getChecksumSha256().equals(head.checksumSha256())) {
+            throw new ValidationException("Uploaded file checksum does not match reservation");
+        }
+
+        verifyStoredPdfHeader(reservation.getS3Key());
+
+        Customer customer = reservation.getCustomer();
+        AccountStatement statement = statementRepository.save(AccountStatement.builder()
+                .customer(customer)
+                .s3Key(reservation.getS3Key())
+                .fileName(reservation.getFileName())
+                .fileSizeBytes(head.sizeBytes())
+                .statementPeriod(reservation.getStatementPeriod())
+                .contentType(head.contentType())
+                .checksumSha256(head.checksumSha256())
+                .encrypted(true)
+                .build());
+
+        uploadReservationRepository.delete(reservation);
+        statementListCache.invalidate(customerId);
+
+        // Audit log
+        auditLogWriter.record(AuditLog.builder()
+                .customer(customer)
+                .action("UPLOAD")
+                .resourceType("ACCOUNT_STATEMENT")
+                .resourceId(statement.getId())
+                .ipAddress(ipAddress)
+                .details("Uploaded statement for period: " + statement.getStatementPeriod())
+                .build());
+
+        log.info("Direct upload finalized: {} for customer: {}", statement.getId(), customerId);
+
+        return mapToUploadResponse(statement);
+    }
+
+    @Transactional
+    public int reapExpiredUploadReservations(LocalDateTime cutoff) {
+        List<UploadReservation> expired = uploadReservationRepository
+                .findTop500ByExpiresAtBeforeOrderByExpiresAt(cutoff);
+
+        // Whatever the client may have uploaded goes out through the deletion outbox
+        storageDeletionWorker.enqueueAll(expired.stream().map(UploadReservation::getS3Key).toList());
+        uploadReservationRepository.deleteAllInBatch(expired);
+
+        return expired.size();
+    }
+
     @Transactional
     public DownloadLinkResponse generateDownloadLink(
             UUID customerId,
             UUID statementId,
             String ipAddress) {
 
+        StatementMetrics.Phases phases = statementMetrics.start(StatementMetrics.Operation.GENERATE_LINK);
+        try {
+            DownloadLinkResponse response = generateDownloadLink(customerId, statementId, ipAddress, phases);
+            phases.succeeded();
+            return response;
+        } catch (RuntimeException e) {
+            phases.failed(e);
+            throw e;
+        }
+    }
+
+    private DownloadLinkResponse generateDownloadLink(
+            UUID customerId,
+            UUID statementId,
+            String ipAddress,
+            StatementMetrics.Phases phases) {
+
         // Validate statement belongs to customer
         AccountStatement statement = statementRepository
                 .findByIdAndCustomerId(statementId, customerId)
                 .orElseThrow(() -> new ResourceNotFoundException("Statement not found"));
+        phases.mark("lookup");
 
-        // Check active token limit
-        long activeTokens = downloadTokenRepository
-                .countActiveTokensByCustomer(customerId, LocalDateTime.now());
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(downloadLinkExpirationMinutes);
+        Customer customer = statement.getCustomer();
 
-        if (activeTokens >= MAX_ACTIVE_TOKENS_PER_CUSTOMER) {
-            throw new BusinessException("Maximum number of active download links reached");
+        // The only business failure left while issuing is the active link limit
+        String token;
+        try {
+            token = downloadLinkMode == DownloadLinkMode.STATELESS
+                    ? issueStatelessToken(statementId, customerId, expiresAt)
+                    : issueTableToken(statement, customer, expiresAt);
+        } catch (BusinessException e) {
+            phases.cause(StatementMetrics.FailureCause.TOKEN_LIMIT);
+            throw e;
         }
+        phases.mark("token");
+
+        // Audit log
+        recordLinkGenerated(customer, statement, ipAddress);
+        phases.mark("audit");
+
+        log.info("Download link generated for statement: {} customer: {}", statementId, customerId);
+
+        return toLinkResponse(token, expiresAt);
+    }
+
+    // One transaction and one batched token insert for the whole request; a statement that is missing or
+    // over the link limit fails on its own without rolling back the others
+    @Transactional
+    public List<BulkItemResult<DownloadLinkResponse>> generateDownloadLinks(
+            UUID customerId,
+            List<UUID> statementIds,
+            String ipAddress) {
+
+        Map<UUID, AccountStatement> statements = new HashMap<>();
+        statementRepository.findAllByIdInAndCustomerId(statementIds, customerId)
+                .forEach(statement -> statements.put(statement.getId(), statement));
 
-        // Generate secure token
-        String token = generateSecureToken();
         LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(downloadLinkExpirationMinutes);
+        List<DownloadToken> tokens = new ArrayList<>();
+        List<BulkItemResult<DownloadLinkResponse>> results = new ArrayList<>(statementIds.size());
+
+        for (int i = 0; i < statementIds.size(); i++) {
+            UUID statementId = statementIds.get(i);
+            AccountStatement statement = statements.get(statementId);
+            if (statement == null) {
+                results.add(BulkItemResult.failed(i, statementId, "Statement not found"));
+                continue;
+            }
+
+            try {
+                String token;
+                if (downloadLinkMode == DownloadLinkMode.STATELESS) {
+                    token = issueStatelessToken(statementId, customerId, expiresAt);
+                } else {
+                    token = acquireTableToken(customerId, statementId, expiresAt, tokens.size());
+                    tokens.add(newDownloadToken(token, statement, statement.getCustomer(), expiresAt));
+                }
+                recordLinkGenerated(statement.getCustomer(), statement, ipAddress);
+                results.add(BulkItemResult.succeeded(i, statementId, toLinkResponse(token, expiresAt)));
+            } catch (BusinessException e) {
+                results.add(BulkItemResult.failed(i, statementId, e.getMessage()));
+            }
+        }
+
+        downloadTokenRepository.saveAll(tokens);
+
+        log.info("Bulk generated {} download links for customer: {}", tokens.size(), customerId);
+
+        return results;
+    }
+
+    @Transactional
+    public String downloadStatement(String token, String ipAddress) {
+
+        StatementMetrics.Phases phases = statementMetrics.start(StatementMetrics.Operation.DOWNLOAD);
+        try {
+            DownloadTarget target = consumeDownload(token, ipAddress, phases);
+
+            // Generate presigned URL
+            String url;
+            try {
+                url = statementStorage.presignDownload(
+                        target.s3Key(), target.fileName(), target.contentType(), Duration.ofMinutes(5));
+            } catch (RuntimeException e) {
+                phases.cause(StatementMetrics.FailureCause.STORAGE_ERROR);
+                throw e;
+            }
+            phases.mark("presign");
+            phases.succeeded();
+            return url;
+        } catch (RuntimeException e) {
+            phases.failed(e);
+            throw e;
+        }
+    }
+
+    // Proxy mode: a request consumes the link. resume is set only for a single satisfiable range that does not
+    // start at byte 0; such a request on an already consumed, unexpired link continues the earlier download,
+    // provided it comes from the client that consumed the link and that client has resumes left
+    @Transactional
+    public DownloadTarget openProxyDownload(String token, String ipAddress, boolean resume) {
+        StatementMetrics.Phases phases = statementMetrics.start(StatementMetrics.Operation.DOWNLOAD);
+        try {
+            DownloadTarget target;
+            if (!resume) {
+                target = consumeDownload(token, ipAddress, phases);
+            } else {
+                try {
+                    target = consumeDownload(token, ipAddress, phases);
+                } catch (InvalidTokenException e) {
+                    target = resumeDownload(token, ipAddress);
+                    phases.mark("resume");
+                }
+            }
+            phases.succeeded();
+            return target;
+        } catch (RuntimeException e) {
+            phases.failed(e);
+            throw e;
+        }
+    }
+
+    // Resolves an unexpired link without consuming it, used for If-None-Match revalidation and Range validation
+    @Transactional(readOnly = true)
+    public DownloadTarget peekDownload(String token) {
+        if (DownloadTokenSigner.isSignedToken(token)) {
+            DownloadTokenSigner.Payload payload = downloadTokenSigner.verify(token)
+                    .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
+            return loadStatementTarget(payload);
+        }
+
+        return downloadTokenRepository.findUnexpiredToken(token, LocalDateTime.now())
+                .map(StatementService::toDownloadTarget)
+                .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
+    }
+
+    public void streamObject(DownloadTarget target, long start, long endInclusive, OutputStream out) throws IOException {
+        String s3Key = target.s3Key();
+        if (statementObjectCache.serve(s3Key, target.checksumSha256(), start, endInclusive, out)) {
+            return;
+        }
+
+        // Only a full read can be checked against the stored checksum, so ranged misses are not cached
+        boolean wholeObject = start == 0 && endInclusive == target.fileSizeBytes() - 1;
+        byte[] buffer = new byte[proxyBufferBytes];
+        try (StatementObjectCache.Fill fill = wholeObject
+                     ? statementObjectCache.beginFill(s3Key, target.checksumSha256(), target.fileSizeBytes())
+                     : StatementObjectCache.Fill.NONE;
+             InputStream in = statementStorage.openRange(s3Key, start, endInclusive)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                fill.write(buffer, 0, read);
+            }
+            fill.complete();
+        }
+    }
+
+    private DownloadTarget consumeDownload(String token, String ipAddress, StatementMetrics.Phases phases) {
+
+        // Validate and consume the token; signed tokens are accepted in either mode so links outlive a mode switch
+        DownloadTarget target = DownloadTokenSigner.isSignedToken(token)
+                ? consumeStatelessToken(token, ipAddress)
+                : consumeTableToken(token, ipAddress);
+        phases.mark("consume");
+
+        // Audit log
+        auditLogWriter.record(AuditLog.builder()
+                .customer(customerRepository.getReferenceById(target.customerId()))
+                .action("DOWNLOAD")
+                .resourceType("ACCOUNT_STATEMENT")
+                .resourceId(target.statementId())
+                .ipAddress(ipAddress)
+                .details("Downloaded statement: " + target.fileName())
+                .build());
+        phases.mark("audit");
+
+        log.info("Statement downloaded: {} by customer: {}", target.statementId(), target.customerId());
+
+        return target;
+    }
+
+    // Only a consumed, unexpired link can be resumed, only by the client that consumed it and at most
+    // max-resumes times, so a leaked link cannot be replayed with Range requests. Every resume is audited
+    private DownloadTarget resumeDownload(String token, String ipAddress) {
+        DownloadTarget target;
+        if (DownloadTokenSigner.isSignedToken(token)) {
+            DownloadTokenSigner.Payload payload = downloadTokenSigner.verify(token)
+                    .filter(p -> statelessLinkRegistry.tryResume(p.nonce(), p.expiresAt(), ipAddress, maxDownloadResumes))
+                    .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
+            target = loadStatementTarget(payload);
+        } else {
+            target = downloadTokenRepository
+                    .resumeConsumedToken(token, LocalDateTime.now(), ipAddress, maxDownloadResumes)
+                    .map(StatementService::toDownloadTarget)
+                    .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
+        }
+
+        auditLogWriter.record(AuditLog.builder()
+                .customer(customerRepository.getReferenceById(target.customerId()))
+                .action("DOWNLOAD_RESUME")
+                .resourceType("ACCOUNT_STATEMENT")
+                .resourceId(target.statementId())
+                .ipAddress(ipAddress)
+                .details("Resumed download of statement: " + target.fileName())
+                .build());
+
+        log.info("Statement download resumed: {} by customer: {}", target.statementId(), target.customerId());
+
+        return target;
+    }
+
+    private String issueTableToken(AccountStatement statement, Customer customer, LocalDateTime expiresAt) {
+        String token = acquireTableToken(customer.getId(), statement.getId(), expiresAt, 0);
 
         // Save token
-        Customer customer = statement.getCustomer();
-        DownloadToken downloadToken = DownloadToken.builder()
+        downloadTokenRepository.save(newDownloadToken(token, statement, customer, expiresAt));
+
+        return token;
+    }
+
+    // unsavedTokens: tokens issued earlier in this transaction that the count query cannot see yet
+    private String acquireTableToken(UUID customerId, UUID statementId, LocalDateTime expiresAt, int unsavedTokens) {
+        // Generate secure token
+        String token = generateSecureToken();
+
+        // Check active token limit, in memory unless the tracker is disabled
+        if (activeLinkTrackerEnabled) {
+            if (!activeLinkTracker.tryAcquireOrRecount(
+                    customerId, statementId, token, toInstant(expiresAt), MAX_ACTIVE_TOKENS_PER_CUSTOMER)) {
+                throw new BusinessException("Maximum number of active download links reached");
+            }
+        } else {
+            long activeTokens = downloadTokenRepository
+                    .countActiveTokensByCustomer(customerId, LocalDateTime.now()) + unsavedTokens;
+
+            if (activeTokens >= MAX_ACTIVE_TOKENS_PER_CUSTOMER) {
+                throw new BusinessException("Maximum number of active download links reached");
+            }
+        }
+
+        return token;
+    }
+
+    private static DownloadToken newDownloadToken(
+            String token,
+            AccountStatement statement,
+            Customer customer,
+            LocalDateTime expiresAt) {
+        return DownloadToken.builder()
                 .token(token)
                 .statement(statement)
                 .customer(customer)
                 .expiresAt(expiresAt)
                 .used(false)
+                .resumeCount(0)
                 .build();
+    }
 
-        downloadTokenRepository.save(downloadToken);
-
-        // Audit log
-        auditLogRepository.save(AuditLog.builder()
+    private void recordLinkGenerated(Customer customer, AccountStatement statement, String ipAddress) {
+        auditLogWriter.record(AuditLog.builder()
                 .customer(customer)
                 .action("GENERATE_LINK")
                 .resourceType("ACCOUNT_STATEMENT")
-                .resourceId(statementId)
+                .resourceId(statement.getId())
                 .ipAddress(ipAddress)
                 .details("Generated download link for statement: " + statement.getFileName())
                 .build());
+    }
 
-        log.info("Download link generated for statement: {} customer: {}", statementId, customerId);
+    private DownloadLinkResponse toLinkResponse(String token, LocalDateTime expiresAt) {
+        DownloadLinkResponse response = new DownloadLinkResponse();
+        response.setDownloadUrl("/api/statements/download/" + token);
+        response.setExpiresAt(expiresAt);
+        response.setValidForMinutes(downloadLinkExpirationMinutes);
+        return response;
+    }
 
-        String downloadUrl = "/api/statements/download/" + token;
+    private String issueStatelessToken(UUID statementId, UUID customerId, LocalDateTime expiresAt) {
+        UUID nonce = UUID.randomUUID();
+        Instant expiry = toInstant(expiresAt);
 
-        return new DownloadLinkResponse() {{
-            setDownloadUrl(downloadUrl);
-            setExpiresAt(expiresAt);
-            setValidForMinutes(downloadLinkExpirationMinutes);
-        }};
+        if (!activeLinkTracker.tryAcquire(
+                customerId, statementId, nonce.toString(), expiry, MAX_ACTIVE_TOKENS_PER_CUSTOMER)) {
+            throw new BusinessException("Maximum number of active download links reached");
+        }
+
+        return downloadTokenSigner.sign(new DownloadTokenSigner.Payload(statementId, customerId, expiry, nonce));
     }
 
-    @Transactional
-    public String downloadStatement(String token, String ipAddress) {
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
 
-        // Validate token
-        DownloadToken downloadToken = downloadTokenRepository
-                .findValidToken(token, LocalDateTime.now())
+    private DownloadTarget consumeTableToken(String token, String ipAddress) {
+        DownloadTokenTarget consumed = downloadTokenRepository
+                .consumeValidToken(token, LocalDateTime.now(), ipAddress)
                 .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
+        activeLinkTracker.release(token);
 
-        // Mark token as used
-        downloadToken.setUsed(true);
-        downloadToken.setUsedAt(LocalDateTime.now());
-        downloadTokenRepository.save(downloadToken);
-
-        AccountStatement statement = downloadToken.getStatement();
+        return toDownloadTarget(consumed);
+    }
 
-        // Generate presigned URL
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucketName)
-                .key(statement.getS3Key())
-                .responseContentDisposition("attachment; filename=\"" + statement.getFileName() + "\"")
-                .responseContentType(statement.getContentType())
-                .build();
+    private DownloadTarget consumeStatelessToken(String token, String ipAddress) {
+        DownloadTokenSigner.Payload payload = downloadTokenSigner.verify(token)
+                .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
 
-        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                .signatureDuration(Duration.ofMinutes(5))
-                .getObjectRequest(getObjectRequest)
-                .build();
+        if (!statelessLinkRegistry.trySpend(payload.nonce(), payload.expiresAt(), ipAddress)) {
+            throw new InvalidTokenException("Invalid or expired download link");
+        }
+        activeLinkTracker.release(payload.nonce().toString());
 
-        PresignedGetObjectRequest presignedRequest = s3Presigner.presignGetObject(presignRequest);
-        String presignedUrl = presignedRequest.url().toString();
+        return loadStatementTarget(payload);
+    }
 
-        // Audit log
-        auditLogRepository.save(AuditLog.builder()
-                .customer(downloadToken.getCustomer())
-                .action("DOWNLOAD")
-                .resourceType("ACCOUNT_STATEMENT")
-                .resourceId(statement.getId())
-                .ipAddress(ipAddress)
-                .details("Downloaded statement: " + statement.getFileName())
-                .build());
+    private DownloadTarget loadStatementTarget(DownloadTokenSigner.Payload payload) {
+        // The statement may have been deleted since the link was issued
+        AccountStatement statement = statementRepository
+                .findByIdAndCustomerId(payload.statementId(), payload.customerId())
+                .orElseThrow(() -> new InvalidTokenException("Invalid or expired download link"));
 
-        log.info("Statement downloaded: {} by customer: {}", statement.getId(), downloadToken.getCustomer().getId());
+        return new DownloadTarget(statement.getId(), payload.customerId(), statement.getS3Key(),
+                statement.getFileName(), statement.getContentType(),
+                statement.getChecksumSha256(), statement.getFileSizeBytes());
+    }
 
-        return presignedUrl;
+    private static DownloadTarget toDownloadTarget(DownloadTokenTarget token) {
+        return new DownloadTarget(token.getStatementId(), token.getCustomerId(), token.getS3Key(),
+                token.getFileName(), token.getContentType(), token.getChecksumSha256(), token.getFileSizeBytes());
     }
 
     @Transactional(readOnly = true)
-    public List<StatementListResponse> getCustomerStatements(UUID customerId) {
-        return statementRepository.findByCustomerIdOrderByStatementPeriodDesc(customerId)
-                .stream()
-                .map(this::mapToListResponse)
-                .collect(Collectors.toList());
+    public StatementPage getCustomerStatements(
+            UUID customerId,
+            String cursor,
+            String fromPeriod,
+            String toPeriod,
+            Integer limit) {
+
+        int pageSize = limit == null
+                ? defaultPageSize
+                : Math.max(1, Math.min(limit, maxPageSize));
+
+        // One extra row tells us whether there is a next page without a count query
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+
+        List<StatementListResponse> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = statementRepository.findFirstPage(customerId, fromPeriod, toPeriod, pageable);
+        } else {
+            StatementCursor position = StatementCursor.decode(cursor);
+            rows = statementRepository.findPageAfter(
+                    customerId, fromPeriod, toPeriod, position.statementPeriod(), position.id(), pageable);
+        }
+
+        if (rows.size() <= pageSize) {
+            return new StatementPage(rows, null);
+        }
+
+        List<StatementListResponse> page = rows.subList(0, pageSize);
+        StatementListResponse last = page.get(pageSize - 1);
+        return new StatementPage(page, StatementCursor.encode(last.getStatementPeriod(), last.getId()));
     }
 
     @Transactional
     public void deleteStatement(UUID customerId, UUID statementId, String ipAddress) {
 
+        StatementMetrics.Phases phases = statementMetrics.start(StatementMetrics.Operation.DELETE);
+        try {
+            deleteStatement(customerId, statementId, ipAddress, phases);
+            phases.succeeded();
+        } catch (RuntimeException e) {
+            phases.failed(e);
+            throw e;
+        }
+    }
+
+    private void deleteStatement(UUID customerId, UUID statementId, String ipAddress, StatementMetrics.Phases phases) {
+
         AccountStatement statement = statementRepository
                 .findByIdAndCustomerId(statementId, customerId)
                 .orElseThrow(() -> new ResourceNotFoundException("Statement not found"));
+        phases.mark("lookup");
 
-        // Delete from S3
-        try {
-            DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(statement.getS3Key())
-                    .build();
-
-            s3Client.deleteObject(deleteRequest);
-        } catch (Exception e) {
-            log.error("Failed to delete S3 object: {}", statement.getS3Key(), e);
-            throw new BusinessException("Failed to delete statement from storage");
-        }
-
-        // Delete from database
+        // Delete from database; the object itself is removed by StorageDeletionWorker once this commits
         statementRepository.delete(statement);
+        storageDeletionWorker.enqueue(statement.getS3Key());
+        // Its download_tokens rows are deleted with it
+        activeLinkTracker.releaseStatements(customerId, List.of(statementId));
+        // Hibernate flushes the DELETE at commit, so this phase is mostly the outbox insert
+        phases.mark("db_delete");
+        statementListCache.invalidate(customerId);
+        statementObjectCache.remove(statement.getS3Key());
 
         // Audit log
-        auditLogRepository.save(AuditLog.builder()
+        auditLogWriter.record(AuditLog.builder()
                 .customer(statement.getCustomer())
                 .action("DELETE")
                 .resourceType("ACCOUNT_STATEMENT")
@@ -251,11 +920,60 @@ public class StatementService {
                 .ipAddress(ipAddress)
                 .details("Deleted statement: " + statement.getFileName())
                 .build());
+        phases.mark("audit");
 
         log.info("Statement deleted: {} by customer: {}", statementId, customerId);
     }
 
-    private void validateFile(MultipartFile file) {
+    @Transactional
+    public List<BulkItemResult<Void>> deleteStatements(UUID customerId, List<UUID> statementIds, String ipAddress) {
+
+        Map<UUID, AccountStatement> statements = new HashMap<>();
+        statementRepository.findAllByIdInAndCustomerId(statementIds, customerId)
+                .forEach(statement -> statements.put(statement.getId(), statement));
+
+        List<AccountStatement> deleted = new ArrayList<>();
+        List<BulkItemResult<Void>> results = new ArrayList<>(statementIds.size());
+        for (int i = 0; i < statementIds.size(); i++) {
+            UUID statementId = statementIds.get(i);
+            // remove() so an id listed twice is only deleted once
+            AccountStatement statement = statements.remove(statementId);
+            if (statement == null) {
+                results.add(BulkItemResult.failed(i, statementId, "Statement not found"));
+                continue;
+            }
+            deleted.add(statement);
+            results.add(BulkItemResult.succeeded(i, statementId, null));
+        }
+
+        if (deleted.isEmpty()) {
+            return results;
+        }
+
+        // One DELETE for all rows; the objects go out through the outbox in DeleteObjects batches
+        statementRepository.deleteAllInBatch(deleted);
+        storageDeletionWorker.enqueueAll(deleted.stream().map(AccountStatement::getS3Key).toList());
+        statementListCache.invalidate(customerId);
+        activeLinkTracker.releaseStatements(customerId, deleted.stream().map(AccountStatement::getId).toList());
+
+        for (AccountStatement statement : deleted) {
+            statementObjectCache.remove(statement.getS3Key());
+            auditLogWriter.record(AuditLog.builder()
+                    .customer(statement.getCustomer())
+                    .action("DELETE")
+                    .resourceType("ACCOUNT_STATEMENT")
+                    .resourceId(statement.getId())
+                    .ipAddress(ipAddress)
+                    .details("Deleted statement: " + statement.getFileName())
+                    .build());
+        }
+
+        log.info("Bulk deleted {} statements for customer: {}", deleted.size(), customerId);
+
+        return results;
+    }
+
+    static void validateFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new ValidationException("File is empty");
         }
@@ -269,20 +987,61 @@ public class StatementService {
             throw new ValidationException("Only PDF files are allowed");
         }
 
-        // Additional PDF validation
-        try {
-            byte[] header = new byte[4];
-            file.getInputStream().read(header);
-            String headerString = new String(header);
-            if (!headerString.equals("%PDF")) {
+        // The %PDF header is checked on the upload stream itself, see requirePdfHeader
+    }
+
+    // Remembers whether reading the client's upload failed, e.g. because the client went away mid-body
+    private static final class ClientInputStream extends FilterInputStream {
+        private boolean failed;
+
+        ClientInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                failed = true;
+                throw e;
+            }
+        }
+    }
+
+    // Peeks at the first bytes without consuming them, so the same stream can go on to storage
+    static void requirePdfHeader(InputStream in) throws IOException {
+        in.mark(PDF_HEADER.length());
+        byte[] header = in.readNBytes(PDF_HEADER.length());
+        in.reset();
+        if (!new String(header, StandardCharsets.US_ASCII).equals(PDF_HEADER)) {
+            throw new ValidationException("Invalid PDF file");
+        }
+    }
+
+    private void verifyStoredPdfHeader(String s3Key) {
+        try (InputStream in = statementStorage.openRange(s3Key, 0, PDF_HEADER.length() - 1)) {
+            byte[] header = in.readNBytes(PDF_HEADER.length());
+            if (!new String(header, StandardCharsets.US_ASCII).equals(PDF_HEADER)) {
                 throw new ValidationException("Invalid PDF file");
             }
         } catch (IOException e) {
-            throw new ValidationException("Failed to validate file");
+            log.error("Failed to read header of stored object: {}", s3Key, e);
+            throw new BusinessException("Failed to verify uploaded file");
         }
     }
 
-    private String generateS3Key(UUID customerId, String period, String filename) {
+    static String generateS3Key(UUID customerId, String period, String filename) {
         String sanitizedFilename = filename.replaceAll("[^a-zA-Z0-9.-]", "_");
         return String.format("statements/%s/%s/%s_%s",
                 customerId,
@@ -291,40 +1050,14 @@ public class StatementService {
                 sanitizedFilename);
     }
 
-    private void uploadToS3(String key, byte[] data, String contentType) {
-        try {
-            PutObjectRequest putRequest = PutObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .contentType(contentType)
-                    .serverSideEncryption(ServerSideEncryption.AES256)
-                    .build();
-
-            s3Client.putObject(putRequest, RequestBody.fromBytes(data));
-        } catch (Exception e) {
-            log.error("Failed to upload to S3: {}", key, e);
-            throw new BusinessException("Failed to upload file to storage");
-        }
-    }
-
-    private String calculateSHA256(byte[] data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(data);
-            return Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new BusinessException("Failed to calculate checksum");
-        }
-    }
-
-    private String generateSecureToken() {
+    static String generateSecureToken() {
         SecureRandom random = new SecureRandom();
         byte[] bytes = new byte[32];
         random.nextBytes(bytes);
         return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
 
-    private StatementUploadResponse mapToUploadResponse(AccountStatement statement) {
+    static StatementUploadResponse mapToUploadResponse(AccountStatement statement) {
         StatementUploadResponse response = new StatementUploadResponse();
         response.setId(statement.getId());
         response.setFileName(statement.getFileName());
@@ -334,13 +1067,12 @@ public class StatementService {
         return response;
     }
 
-    private StatementListResponse mapToListResponse(AccountStatement statement) {
-        StatementListResponse response = new StatementListResponse();
-        response.setId(statement.getId());
-        response.setFileName(statement.getFileName());
-        response.setStatementPeriod(statement.getStatementPeriod());
-        response.setFileSizeBytes(statement.getFileSizeBytes());
-        response.setCreatedAt(statement.getCreatedAt());
-        return response;
-    }
+    public record DownloadTarget(
+            UUID statementId,
+            UUID customerId,
+            String s3Key,
+            String fileName,
+            String contentType,
+            String checksumSha256,
+            long fileSizeBytes) {}
 }
@@ -0,0 +1,145 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.entity.StorageDeletion;
+import com.capitecfilestatement.repository.StorageDeletionRepository;
+import com.capitecfilestatement.storage.StatementStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+// Drains storage_deletions with multi-object deletes. A batch is leased and committed, deleted from storage with
+// no transaction open, then settled in a second short transaction. A crash mid-batch leaves its rows to be claimed
+// again once the lease runs out; deleting an object twice is harmless.
+@Slf4j
+@Component
+public class StorageDeletionWorker {
+
+    private final StorageDeletionRepository storageDeletionRepository;
+    private final StatementStorage statementStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration backoffBase;
+    private final Duration backoffMax;
+
+    private final Counter deletedCounter;
+    private final Counter failedCounter;
+
+    public StorageDeletionWorker(
+            StorageDeletionRepository storageDeletionRepository,
+            StatementStorage statementStorage,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${storage-deletion.batch-size:1000}") int batchSize,
+            @Value("${storage-deletion.lease-seconds:300}") long leaseSeconds,
+            @Value("${storage-deletion.backoff-base-seconds:30}") long backoffBaseSeconds,
+            @Value("${storage-deletion.backoff-max-seconds:3600}") long backoffMaxSeconds) {
+        this.storageDeletionRepository = storageDeletionRepository;
+        this.statementStorage = statementStorage;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.min(batchSize, StatementStorage.MAX_DELETE_BATCH);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.backoffBase = Duration.ofSeconds(backoffBaseSeconds);
+        this.backoffMax = Duration.ofSeconds(backoffMaxSeconds);
+        this.deletedCounter = meterRegistry.counter("storage.deletions.completed");
+        this.failedCounter = meterRegistry.counter("storage.deletions.failed");
+    }
+
+    public void enqueue(String s3Key) {
+        storageDeletionRepository.save(StorageDeletion.builder()
+                .s3Key(s3Key)
+                .build());
+    }
+
+    public void enqueueAll(Collection<String> s3Keys) {
+        storageDeletionRepository.saveAll(s3Keys.stream()
+                .map(s3Key -> StorageDeletion.builder().s3Key(s3Key).build())
+                .toList());
+    }
+
+    @Scheduled(fixedDelayString = "${storage-deletion.poll-interval-ms:5000}")
+    public void drain() {
+        int claimed;
+        do {
+            claimed = processBatch();
+        } while (claimed == batchSize);
+    }
+
+    private int processBatch() {
+        LocalDateTime claimedAt = LocalDateTime.now();
+        List<StorageDeletion> due = transactionTemplate.execute(status ->
+                storageDeletionRepository.claimDue(claimedAt, claimedAt.plus(lease), batchSize));
+        if (due == null || due.isEmpty()) {
+            return 0;
+        }
+
+        // The same key can be queued twice, e.g. by a reservation reaped while its retry was pending
+        Set<String> keys = new LinkedHashSet<>();
+        due.forEach(deletion -> keys.add(deletion.getS3Key()));
+
+        Map<String, String> failures;
+        try {
+            failures = statementStorage.deleteBatch(keys);
+        } catch (RuntimeException e) {
+            log.warn("Failed to delete batch of {} storage objects", keys.size(), e);
+            String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            failures = new HashMap<>();
+            for (String key : keys) {
+                failures.put(key, reason);
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<UUID> completed = new ArrayList<>();
+        List<StorageDeletion> retries = new ArrayList<>();
+        for (StorageDeletion deletion : due) {
+            String failure = failures.get(deletion.getS3Key());
+            if (failure == null) {
+                completed.add(deletion.getId());
+                continue;
+            }
+
+            int attempts = deletion.getAttempts() + 1;
+            deletion.setAttempts(attempts);
+            deletion.setLastError(failure);
+            deletion.setNextAttemptAt(now.plus(backoff(attempts)));
+            retries.add(deletion);
+            if (attempts % 10 == 0) {
+                log.error("Storage object {} still not deleted after {} attempts: {}", deletion.getS3Key(), attempts, failure);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            storageDeletionRepository.deleteAllByIdInBatch(completed);
+            retries.forEach(retry -> storageDeletionRepository.scheduleRetry(
+                    retry.getId(), retry.getAttempts(), retry.getLastError(), retry.getNextAttemptAt()));
+        });
+        deletedCounter.increment(completed.size());
+        failedCounter.increment(due.size() - completed.size());
+
+        if (!completed.isEmpty()) {
+            log.debug("Deleted {} storage objects, {} to retry", completed.size(), due.size() - completed.size());
+        }
+        return due.size();
+    }
+
+    // Exponential backoff capped at backoffMax
+    private Duration backoff(int attempts) {
+        Duration delay = backoffBase.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(backoffMax) > 0 ? backoffMax : delay;
+    }
+}
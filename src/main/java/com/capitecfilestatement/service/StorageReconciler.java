@@ -0,0 +1,263 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.repository.AccountStatementRepository;
+import com.capitecfilestatement.storage.StatementStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Finds storage objects under statements/ with no account_statements row, and rows whose object is gone.
+// Each customer prefix is listed page by page and merged against that customer's keys in byte order, so
+// neither side is ever loaded for the whole bucket. Prefixes run on a small dedicated pool, never on the
+// bulk transfer executor, so a run cannot crowd out live uploads. The scheduled run is driven from the
+// reconciler's own thread, so a run over the whole bucket never holds the shared scheduler thread.
+@Slf4j
+@Component
+public class StorageReconciler {
+
+    private static final String ROOT_PREFIX = "statements/";
+    private static final String DELIMITER = "/";
+
+    public enum Mode { REPORT, DELETE }
+
+    private final StatementStorage statementStorage;
+    private final AccountStatementRepository statementRepository;
+    private final StorageDeletionWorker storageDeletionWorker;
+    private final boolean enabled;
+    private final Mode mode;
+    private final Duration grace;
+    private final int concurrency;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    // One thread and no queue: a start while a run is going is rejected rather than queued behind it
+    private final ThreadPoolExecutor runner = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "storage-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final Counter scannedCounter;
+    private final Counter orphanedCounter;
+    private final Counter missingCounter;
+    private final Timer durationTimer;
+
+    public StorageReconciler(
+            StatementStorage statementStorage,
+            AccountStatementRepository statementRepository,
+            StorageDeletionWorker storageDeletionWorker,
+            MeterRegistry meterRegistry,
+            @Value("${storage-reconciliation.enabled:false}") boolean enabled,
+            @Value("${storage-reconciliation.mode:REPORT}") Mode mode,
+            @Value("${storage-reconciliation.grace-hours:24}") long graceHours,
+            @Value("${storage-reconciliation.concurrency:2}") int concurrency) {
+        this.statementStorage = statementStorage;
+        this.statementRepository = statementRepository;
+        this.storageDeletionWorker = storageDeletionWorker;
+        this.enabled = enabled;
+        this.mode = mode;
+        this.grace = Duration.ofHours(graceHours);
+        this.concurrency = Math.max(1, concurrency);
+        this.scannedCounter = meterRegistry.counter("storage.reconciliation.objects.scanned");
+        this.orphanedCounter = meterRegistry.counter("storage.reconciliation.orphaned.objects");
+        this.missingCounter = meterRegistry.counter("storage.reconciliation.missing.objects");
+        this.durationTimer = meterRegistry.timer("storage.reconciliation.duration");
+    }
+
+    public record Report(long scanned, long orphaned, long missing, long failedPrefixes) {}
+
+    @Scheduled(cron = "${storage-reconciliation.cron:0 15 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    // Runs reconcile() on the reconciler's own thread and returns at once; false if a run is already going
+    public boolean start() {
+        try {
+            runner.execute(() -> {
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    log.error("Storage reconciliation failed", e);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.info("Storage reconciliation already running, skipping");
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Interrupts the run; prefixes in flight are abandoned and picked up again by the next run
+        runner.shutdownNow();
+    }
+
+    public Report reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Storage reconciliation already running, skipping");
+            return new Report(0, 0, 0, 0);
+        }
+
+        long started = System.nanoTime();
+        // Anything newer may still be waiting for its row, e.g. a presigned upload not finalized yet
+        Instant orphanCutoff = Instant.now().minus(grace);
+        Totals totals = new Totals();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "storage-reconcile-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bounds the prefixes queued ahead of the pool, so the prefix listing is consumed as it is paged
+        Semaphore slots = new Semaphore(concurrency * 2);
+
+        try {
+            String continuationToken = null;
+            do {
+                StatementStorage.ListPage page = statementStorage.list(ROOT_PREFIX, DELIMITER, continuationToken);
+                for (String prefix : page.commonPrefixes()) {
+                    slots.acquire();
+                    pool.execute(() -> {
+                        try {
+                            reconcilePrefix(prefix, orphanCutoff, totals);
+                        } catch (RuntimeException e) {
+                            log.warn("Failed to reconcile storage prefix {}", prefix, e);
+                            totals.failedPrefixes.increment();
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+                continuationToken = page.nextContinuationToken();
+            } while (continuationToken != null);
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Storage reconciliation interrupted");
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+
+        durationTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        Report report = new Report(totals.scanned.sum(), totals.orphaned.sum(), totals.missing.sum(), totals.failedPrefixes.sum());
+        log.info("Storage reconciliation ({}) scanned {} objects: {} orphaned, {} missing, {} prefixes failed",
+                mode, report.scanned(), report.orphaned(), report.missing(), report.failedPrefixes());
+        return report;
+    }
+
+    private void reconcilePrefix(String prefix, Instant orphanCutoff, Totals totals) {
+        UUID customerId = customerIdOf(prefix);
+        if (customerId == null) {
+            log.warn("Skipping storage prefix that is not a customer id: {}", prefix);
+            return;
+        }
+
+        // Rows are committed within moments of their object, so an object older than the cutoff with no row
+        // here has none at all
+        List<String> rows = statementRepository.findStoredKeys(customerId);
+        List<String> orphans = new ArrayList<>();
+        List<String> unmatchedRows = new ArrayList<>();
+        int row = 0;
+
+        String continuationToken = null;
+        do {
+            StatementStorage.ListPage page = statementStorage.list(prefix, null, continuationToken);
+            for (StatementStorage.ListedObject object : page.objects()) {
+                totals.scanned.increment();
+                scannedCounter.increment();
+
+                while (row < rows.size() && compareKeys(rows.get(row), object.key()) < 0) {
+                    unmatchedRows.add(rows.get(row++));
+                }
+                if (row < rows.size() && rows.get(row).equals(object.key())) {
+                    row++;
+                } else if (object.lastModified().isBefore(orphanCutoff)) {
+                    orphans.add(object.key());
+                }
+            }
+            continuationToken = page.nextContinuationToken();
+        } while (continuationToken != null);
+
+        while (row < rows.size()) {
+            unmatchedRows.add(rows.get(row++));
+        }
+
+        // The row may have been written, with its object, after that part of the listing was read
+        for (String key : unmatchedRows) {
+            if (statementStorage.head(key).isEmpty()) {
+                log.error("Statement row has no storage object: {}", key);
+                totals.missing.increment();
+                missingCounter.increment();
+            }
+        }
+
+        if (orphans.isEmpty()) {
+            return;
+        }
+        totals.orphaned.add(orphans.size());
+        orphanedCounter.increment(orphans.size());
+
+        if (mode == Mode.REPORT) {
+            orphans.forEach(key -> log.warn("Orphaned storage object: {}", key));
+            return;
+        }
+
+        List<String> confirmed = orphans.stream()
+                .filter(key -> !statementRepository.existsByS3Key(key))
+                .toList();
+        storageDeletionWorker.enqueueAll(confirmed);
+        log.info("Queued {} orphaned storage objects under {} for deletion", confirmed.size(), prefix);
+    }
+
+    private static UUID customerIdOf(String prefix) {
+        String segment = prefix.substring(ROOT_PREFIX.length(), prefix.length() - DELIMITER.length());
+        try {
+            return UUID.fromString(segment);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Unsigned UTF-8 byte order, which is both the S3 listing order and COLLATE "C"
+    private static int compareKeys(String left, String right) {
+        return Arrays.compareUnsigned(
+                left.getBytes(StandardCharsets.UTF_8),
+                right.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Totals {
+        private final LongAdder scanned = new LongAdder();
+        private final LongAdder orphaned = new LongAdder();
+        private final LongAdder missing = new LongAdder();
+        private final LongAdder failedPrefixes = new LongAdder();
+    }
+}
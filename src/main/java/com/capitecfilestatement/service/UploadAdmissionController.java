@@ -0,0 +1,117 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.exception.UploadCapacityExceededException;
+import com.capitecfilestatement.storage.StatementStorage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Caps the heap held by in-flight uploads. Each upload is charged for the buffers it will hold (its storage
+// part buffer, or one chunk for upload sessions) before it allocates them; when the budget is used up the request
+// waits up to max-wait and is then turned away with 503 rather than pushing the node out of memory.
+@Slf4j
+@Component
+public class UploadAdmissionController {
+
+    // Permits are KB so budgets above 2GB still fit in a Semaphore
+    private static final int UNIT_BYTES = 1024;
+
+    // The BufferedInputStream the service reads an upload through, on top of the part buffer
+    private static final int STREAM_BUFFER_BYTES = 8192;
+
+    private final Semaphore budget;
+    private final int budgetUnits;
+    private final int partSizeBytes;
+    private final long maxWaitMillis;
+    private final int retryAfterSeconds;
+
+    private final Timer admittedTimer;
+    private final Timer rejectedTimer;
+    private final Counter rejectedCounter;
+
+    public UploadAdmissionController(
+            MeterRegistry meterRegistry,
+            @Value("${upload-admission.budget-bytes:268435456}") long budgetBytes,
+            @Value("${aws.s3.multipart.part-size-bytes:5242880}") int partSizeBytes,
+            @Value("${upload-admission.max-wait-ms:2000}") long maxWaitMillis,
+            @Value("${upload-admission.retry-after-seconds:5}") int retryAfterSeconds) {
+        this.budgetUnits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, budgetBytes / UNIT_BYTES));
+        // Fair, so a queued large upload is not starved by a stream of small ones
+        this.budget = new Semaphore(budgetUnits, true);
+        this.partSizeBytes = partSizeBytes;
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        Gauge.builder("upload.admission.inflight.bytes", budget, b -> (double) (budgetUnits - b.availablePermits()) * UNIT_BYTES)
+                .description("Upload buffer bytes currently admitted")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("upload.admission.budget.bytes", () -> (double) budgetUnits * UNIT_BYTES)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("upload.admission.queued", budget, Semaphore::getQueueLength)
+                .description("Uploads waiting for budget")
+                .register(meterRegistry);
+        this.admittedTimer = Timer.builder("upload.admission.wait")
+                .tag("outcome", "admitted")
+                .register(meterRegistry);
+        this.rejectedTimer = Timer.builder("upload.admission.wait")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+        this.rejectedCounter = meterRegistry.counter("upload.admission.rejected");
+    }
+
+    // Charge for a whole-file upload streamed through StatementStorage.put: exactly the buffer put allocates,
+    // which is one part however large the file is and less for a file smaller than a part
+    public Permit admitUpload(long fileSizeBytes) {
+        return admit(StatementStorage.putBufferBytes(partSizeBytes, fileSizeBytes) + STREAM_BUFFER_BYTES);
+    }
+
+    public Permit admit(long bytes) {
+        // Never more than the whole budget, or a single oversized request could never get in
+        int units = (int) Math.min(budgetUnits, Math.max(1, (bytes + UNIT_BYTES - 1) / UNIT_BYTES));
+
+        long started = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = budget.tryAcquire(units, maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        long waited = System.nanoTime() - started;
+
+        if (!acquired) {
+            rejectedTimer.record(waited, TimeUnit.NANOSECONDS);
+            rejectedCounter.increment();
+            log.warn("Upload of {} bytes rejected, upload memory budget exhausted", bytes);
+            throw new UploadCapacityExceededException("Server is busy, please retry shortly", retryAfterSeconds);
+        }
+
+        admittedTimer.record(waited, TimeUnit.NANOSECONDS);
+        return new Permit(units);
+    }
+
+    public final class Permit implements AutoCloseable {
+        private final int units;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int units) {
+            this.units = units;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                budget.release(units);
+            }
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.capitecfilestatement.service;
+import com.capitecfilestatement.dto.StatementUploadResponse;
+import com.capitecfilestatement.dto.UploadSessionRequest;
+import com.capitecfilestatement.dto.UploadSessionResponse;
+import com.capitecfilestatement.entity.*;
+import com.capitecfilestatement.exception.*;
+import com.capitecfilestatement.repository.AccountStatementRepository;
+import com.capitecfilestatement.repository.CustomerRepository;
+import com.capitecfilestatement.repository.UploadReservationRepository;
+import com.capitecfilestatement.repository.UploadSessionRepository;
+import com.capitecfilestatement.storage.StatementStorage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Resumable uploads for statements too large for a single request. Each chunk becomes one multipart part in
+// storage and chunks must arrive in order, so the final SHA-256 can be computed as the bytes go by instead of
+// reading the whole object back on complete.
+@Slf4j
+@Service
+public class UploadSessionService {
+
+    private static final int MAX_PARTS = 10_000;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadReservationRepository uploadReservationRepository;
+    private final AccountStatementRepository statementRepository;
+    private final CustomerRepository customerRepository;
+    private final StatementStorage statementStorage;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageDeletionWorker storageDeletionWorker;
+    private final AuditLogWriter auditLogWriter;
+    private final StatementListCache statementListCache;
+    private final UploadAdmissionController uploadAdmissionController;
+    private final long maxFileSizeBytes;
+    private final int chunkSizeBytes;
+    private final Duration idleTimeout;
+
+    // Running digest per session on this instance. Lost on restart or when chunks of one session land on
+    // different instances, in which case complete re-reads the assembled object instead.
+    private final Cache<UUID, ChunkState> chunkStates;
+
+    public UploadSessionService(
+            UploadSessionRepository uploadSessionRepository,
+            UploadReservationRepository uploadReservationRepository,
+            AccountStatementRepository statementRepository,
+            CustomerRepository customerRepository,
+            StatementStorage statementStorage,
+            TransactionTemplate transactionTemplate,
+            StorageDeletionWorker storageDeletionWorker,
+            AuditLogWriter auditLogWriter,
+            StatementListCache statementListCache,
+            UploadAdmissionController uploadAdmissionController,
+            @Value("${upload-session.max-file-size-bytes:104857600}") long maxFileSizeBytes,
+            @Value("${upload-session.chunk-size-bytes:8388608}") int chunkSizeBytes,
+            @Value("${upload-session.idle-timeout-minutes:60}") long idleTimeoutMinutes) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadReservationRepository = uploadReservationRepository;
+        this.statementRepository = statementRepository;
+        this.customerRepository = customerRepository;
+        this.statementStorage = statementStorage;
+        this.transactionTemplate = transactionTemplate;
+        this.storageDeletionWorker = storageDeletionWorker;
+        this.auditLogWriter = auditLogWriter;
+        this.statementListCache = statementListCache;
+        this.uploadAdmissionController = uploadAdmissionController;
+        this.maxFileSizeBytes = maxFileSizeBytes;
+        this.chunkSizeBytes = Math.max(chunkSizeBytes, StatementStorage.MIN_PART_SIZE);
+        this.idleTimeout = Duration.ofMinutes(idleTimeoutMinutes);
+        this.chunkStates = Caffeine.newBuilder()
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    @Transactional
+    public UploadSessionResponse create(UUID customerId, UploadSessionRequest request) {
+
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
+
+        if (!customer.getActive()) {
+            throw new BusinessException("Customer account is inactive");
+        }
+
+        if (request.getFileSizeBytes() > maxFileSizeBytes) {
+            throw new ValidationException("File size exceeds maximum allowed size");
+        }
+
+        if (!StatementService.ALLOWED_CONTENT_TYPES.contains(request.getContentType())) {
+            throw new ValidationException("Only PDF files are allowed");
+        }
+
+        // Storage caps a multipart upload at 10000 parts
+        if ((request.getFileSizeBytes() + chunkSizeBytes - 1) / chunkSizeBytes > MAX_PARTS) {
+            throw new ValidationException("File needs more than " + MAX_PARTS + " chunks");
+        }
+
+        String statementPeriod = request.getStatementPeriod();
+        if (statementRepository.findByCustomerIdAndPeriod(customerId, statementPeriod).isPresent()) {
+            throw new BusinessException("Statement already exists for period: " + statementPeriod);
+        }
+
+        if (uploadReservationRepository.existsActiveReservation(customerId, statementPeriod, LocalDateTime.now())) {
+            throw new BusinessException("An upload is already in progress for period: " + statementPeriod);
+        }
+
+        // An expired session still holds the slot until the reaper gets to it, release it here
+        uploadSessionRepository.findByCustomerIdAndPeriod(customerId, statementPeriod)
+                .ifPresent(existing -> {
+                    if (existing.getExpiresAt().isAfter(LocalDateTime.now())) {
+                        throw new BusinessException("An upload is already in progress for period: " + statementPeriod);
+                    }
+                    release(existing);
+                    uploadSessionRepository.flush();
+                });
+
+        String s3Key = StatementService.generateS3Key(customerId, statementPeriod, request.getFileName());
+        String storageUploadId = statementStorage.createMultipartUpload(s3Key, request.getContentType());
+
+        UploadSession session;
+        try {
+            session = uploadSessionRepository.saveAndFlush(UploadSession.builder()
+                    .customer(customer)
+                    .statementPeriod(statementPeriod)
+                    .s3Key(s3Key)
+                    .storageUploadId(storageUploadId)
+                    .fileName(request.getFileName())
+                    .contentType(request.getContentType())
+                    .fileSizeBytes(request.getFileSizeBytes())
+                    .chunkSizeBytes(chunkSizeBytes)
+                    .receivedBytes(0L)
+                    .expiresAt(LocalDateTime.now().plus(idleTimeout))
+                    .build());
+        } catch (RuntimeException e) {
+            abortQuietly(s3Key, storageUploadId);
+            throw e;
+        }
+
+        log.info("Upload session created: {} for customer: {} period: {}", session.getId(), customerId, statementPeriod);
+
+        return mapToResponse(session);
+    }
+
+    // Accepts the chunk starting at offset. Every chunk but the last must be exactly chunkSizeBytes long, so
+    // the part number follows from the offset and a retried chunk simply overwrites its own part.
+    public UploadSessionResponse appendChunk(UUID customerId, UUID sessionId, long offset, InputStream body) throws IOException {
+
+        UploadSession session = uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+
+        if (session.getExpiresAt().isBefore(LocalDateTime.now())) {
+            throw new BusinessException("Upload session has expired");
+        }
+
+        if (offset != session.getReceivedBytes()) {
+            throw new UploadOffsetMismatchException(
+                    "Chunk must start at offset " + session.getReceivedBytes(), session.getReceivedBytes());
+        }
+
+        // Every byte is in, a chunk at the final offset would only add an empty part after the last one
+        long remaining = session.getFileSizeBytes() - offset;
+        if (remaining <= 0) {
+            throw new UploadOffsetMismatchException(
+                    "All " + session.getFileSizeBytes() + " bytes received, complete the upload", session.getReceivedBytes());
+        }
+        int chunkSize = session.getChunkSizeBytes();
+        int expected = (int) Math.min(chunkSize, remaining);
+
+        ChunkState state = chunkStates.get(sessionId, id -> new ChunkState());
+        if (!state.lock.tryLock()) {
+            throw new UploadOffsetMismatchException(
+                    "Another chunk is being uploaded for this session", session.getReceivedBytes());
+        }
+
+        // The whole chunk is held in memory until its part is stored
+        try (UploadAdmissionController.Permit permit = uploadAdmissionController.admit(expected)) {
+            byte[] buffer = new byte[expected];
+            int length = body.readNBytes(buffer, 0, expected);
+            if (length < expected) {
+                throw new ValidationException("Chunk must be " + expected + " bytes, got " + length);
+            }
+            if (body.read() != -1) {
+                throw new ValidationException("Chunk exceeds " + expected + " bytes");
+            }
+
+            if (offset == 0) {
+                StatementService.requirePdfHeader(new ByteArrayInputStream(buffer, 0, length));
+            }
+
+            int partNumber = (int) (offset / chunkSize) + 1;
+            String eTag = statementStorage.uploadPart(
+                    session.getS3Key(), session.getStorageUploadId(), partNumber, buffer, length);
+
+            UploadSession updated = recordPart(sessionId, offset, new UploadSessionPart(partNumber, eTag, length));
+            state.advance(offset, buffer, length);
+
+            return mapToResponse(updated);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public UploadSessionResponse getStatus(UUID customerId, UUID sessionId) {
+        UploadSession session = uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+        return mapToResponse(session);
+    }
+
+    // Completing the multipart upload and, without a running digest, re-reading the whole object run between two
+    // short transactions, so no connection is held for the storage round trips
+    public StatementUploadResponse complete(UUID customerId, UUID sessionId, String ipAddress) {
+
+        PendingCompletion pending = transactionTemplate.execute(status -> {
+            UploadSession session = uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+
+            if (session.getExpiresAt().isBefore(LocalDateTime.now())) {
+                throw new BusinessException("Upload session has expired");
+            }
+
+            if (!session.getReceivedBytes().equals(session.getFileSizeBytes())) {
+                throw new UploadOffsetMismatchException(
+                        "Upload is incomplete, " + session.getReceivedBytes() + " of "
+                                + session.getFileSizeBytes() + " bytes received",
+                        session.getReceivedBytes());
+            }
+
+            // The recorded ETags, not ListParts, decide which bytes end up in the object
+            List<StatementStorage.StoredPart> parts = session.getParts().stream()
+                    .map(part -> new StatementStorage.StoredPart(part.getPartNumber(), part.getETag()))
+                    .toList();
+            return new PendingCompletion(session, parts);
+        });
+        UploadSession session = pending.session();
+
+        statementStorage.completeMultipartUpload(session.getS3Key(), session.getStorageUploadId(), pending.parts());
+
+        AccountStatement statement;
+        try {
+            String checksumSha256 = checksumOf(session);
+
+            statement = transactionTemplate.execute(status -> {
+                UploadSession current = uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+
+                Customer customer = current.getCustomer();
+                AccountStatement saved = statementRepository.save(AccountStatement.builder()
+                        .customer(customer)
+                        .s3Key(current.getS3Key())
+                        .fileName(current.getFileName())
+                        .fileSizeBytes(current.getFileSizeBytes())
+                        .statementPeriod(current.getStatementPeriod())
+                        .contentType(current.getContentType())
+                        .checksumSha256(checksumSha256)
+                        .encrypted(true)
+                        .build());
+
+                uploadSessionRepository.delete(current);
+                statementListCache.invalidate(customerId);
+
+                // Audit log
+                auditLogWriter.record(AuditLog.builder()
+                        .customer(customer)
+                        .action("UPLOAD")
+                        .resourceType("ACCOUNT_STATEMENT")
+                        .resourceId(saved.getId())
+                        .ipAddress(ipAddress)
+                        .details("Uploaded statement for period: " + saved.getStatementPeriod())
+                        .build());
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            discardAssembled(sessionId, session.getS3Key());
+            throw e;
+        }
+        chunkStates.invalidate(sessionId);
+
+        log.info("Upload session completed: {} as statement: {} for customer: {}", sessionId, statement.getId(), customerId);
+
+        return StatementService.mapToUploadResponse(statement);
+    }
+
+    @Transactional
+    public void abort(UUID customerId, UUID sessionId) {
+        UploadSession session = uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId)
+                .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+
+        statementStorage.abortMultipartUpload(session.getS3Key(), session.getStorageUploadId());
+        uploadSessionRepository.delete(session);
+        chunkStates.invalidate(sessionId);
+
+        log.info("Upload session aborted: {} for customer: {}", sessionId, customerId);
+    }
+
+    @Transactional
+    public int reapExpiredSessions(LocalDateTime cutoff) {
+        List<UploadSession> expired = uploadSessionRepository.findTop100ByExpiresAtBeforeOrderByExpiresAt(cutoff);
+        expired.forEach(this::release);
+        return expired.size();
+    }
+
+    // Parts left behind by a failed abort are cleaned up by the bucket's incomplete multipart upload rule
+    private void release(UploadSession session) {
+        abortQuietly(session.getS3Key(), session.getStorageUploadId());
+        uploadSessionRepository.delete(session);
+        chunkStates.invalidate(session.getId());
+    }
+
+    private void abortQuietly(String s3Key, String storageUploadId) {
+        try {
+            statementStorage.abortMultipartUpload(s3Key, storageUploadId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to abort multipart upload {} for {}", storageUploadId, s3Key, e);
+        }
+    }
+
+    // Once the multipart upload is completed the parts are gone, so a session whose complete failed afterwards can
+    // never be completed again. Drop it and send the assembled object through the deletion outbox. A session that
+    // is already gone was completed concurrently, and the object now belongs to that statement.
+    private void discardAssembled(UUID sessionId, String s3Key) {
+        try {
+            transactionTemplate.executeWithoutResult(tx -> uploadSessionRepository.findById(sessionId)
+                    .ifPresent(session -> {
+                        uploadSessionRepository.delete(session);
+                        storageDeletionWorker.enqueue(s3Key);
+                    }));
+            chunkStates.invalidate(sessionId);
+        } catch (RuntimeException e) {
+            log.error("Failed to queue deletion of {} after upload session {} failed to complete", s3Key, sessionId, e);
+        }
+    }
+
+    // The version check stops two instances from both recording a chunk at the same offset
+    private UploadSession recordPart(UUID sessionId, long offset, UploadSessionPart part) {
+        try {
+            return transactionTemplate.execute(status -> {
+                UploadSession session = uploadSessionRepository.findById(sessionId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+                if (session.getReceivedBytes() != offset) {
+                    throw new UploadOffsetMismatchException(
+                            "Chunk must start at offset " + session.getReceivedBytes(), session.getReceivedBytes());
+                }
+
+                session.getParts().removeIf(existing -> existing.getPartNumber().equals(part.getPartNumber()));
+                session.getParts().add(part);
+                session.setReceivedBytes(offset + part.getSizeBytes());
+                session.setExpiresAt(LocalDateTime.now().plus(idleTimeout));
+                return uploadSessionRepository.saveAndFlush(session);
+            });
+        } catch (ObjectOptimisticLockingFailureException e) {
+            long current = uploadSessionRepository.findById(sessionId)
+                    .map(UploadSession::getReceivedBytes)
+                    .orElseThrow(() -> new ResourceNotFoundException("Upload session not found"));
+            throw new UploadOffsetMismatchException("Chunk was superseded by a concurrent upload", current);
+        }
+    }
+
+    private String checksumOf(UploadSession session) {
+        ChunkState state = chunkStates.getIfPresent(session.getId());
+        if (state != null) {
+            state.lock.lock();
+            try {
+                if (state.digest != null && state.digestedBytes == session.getFileSizeBytes()) {
+                    return Base64.getEncoder().encodeToString(state.digest.digest());
+                }
+            } finally {
+                state.lock.unlock();
+            }
+        }
+
+        // Chunks went through another instance or this one restarted, hash the assembled object instead
+        log.debug("No running digest for upload session {}, re-reading {}", session.getId(), session.getS3Key());
+        MessageDigest digest = newSha256();
+        try (InputStream in = new DigestInputStream(
+                statementStorage.openRange(session.getS3Key(), 0, session.getFileSizeBytes() - 1), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            log.error("Failed to read back assembled upload: {}", session.getS3Key(), e);
+            throw new BusinessException("Failed to verify uploaded file");
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private record PendingCompletion(UploadSession session, List<StatementStorage.StoredPart> parts) {}
+
+    private UploadSessionResponse mapToResponse(UploadSession session) {
+        UploadSessionResponse response = new UploadSessionResponse();
+        response.setSessionId(session.getId());
+        response.setStatementPeriod(session.getStatementPeriod());
+        response.setFileSizeBytes(session.getFileSizeBytes());
+        response.setChunkSizeBytes(session.getChunkSizeBytes());
+        response.setReceivedBytes(session.getReceivedBytes());
+        response.setExpiresAt(session.getExpiresAt());
+        return response;
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BusinessException("Failed to calculate checksum");
+        }
+    }
+
+    private static final class ChunkState {
+        private final ReentrantLock lock = new ReentrantLock();
+        private MessageDigest digest;
+        private long digestedBytes;
+
+        // Only extends the digest if it covers exactly the bytes before this chunk; otherwise it is dropped
+        // and complete falls back to re-reading the object
+        void advance(long offset, byte[] buffer, int length) {
+            if (offset == 0) {
+                digest = newSha256();
+                digestedBytes = 0;
+            }
+            if (digest == null || digestedBytes != offset) {
+                digest = null;
+                return;
+            }
+            digest.update(buffer, 0, length);
+            digestedBytes += length;
+        }
+    }
+}
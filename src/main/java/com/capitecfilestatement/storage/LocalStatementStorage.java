@@ -0,0 +1,463 @@
+package com.capitecfilestatement.storage;
+import com.capitecfilestatement.exception.BusinessException;
+import com.capitecfilestatement.exception.ValidationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// Filesystem backend for benchmarks, load tests and local development. Objects are written to a temp file
+// and renamed into place once fsynced, so readers never see a partial object; presigned URLs point at
+// LocalStorageController and are HMAC-signed the same way as stateless download links.
+@Slf4j
+public class LocalStatementStorage implements StatementStorage {
+
+    public static final String OBJECTS_PATH = "/api/storage/local/objects";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final long TRANSFER_CHUNK = 1024 * 1024;
+    private static final String CONTENT_TYPE_FILE = "content-type";
+    private static final Base64.Encoder SIGNATURE_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final Path objectsRoot;
+    private final Path metadataRoot;
+    private final Path tempRoot;
+    private final String baseUrl;
+    private final SecretKeySpec signingKey;
+
+    public LocalStatementStorage(Path root, String baseUrl, SecretKeySpec signingKey) throws IOException {
+        Path absoluteRoot = root.toAbsolutePath().normalize();
+        this.objectsRoot = Files.createDirectories(absoluteRoot.resolve("objects"));
+        this.metadataRoot = Files.createDirectories(absoluteRoot.resolve("metadata"));
+        this.tempRoot = Files.createDirectories(absoluteRoot.resolve("tmp"));
+        this.baseUrl = baseUrl;
+        this.signingKey = signingKey;
+    }
+
+    @Override
+    public ObjectInfo put(String key, InputStream source, String contentType, long expectedSizeBytes) throws IOException {
+        return write(key, source, contentType, null, null);
+    }
+
+    // Target of a presigned local upload; nothing becomes visible unless it matches what was signed
+    public ObjectInfo acceptUpload(String key, InputStream source, String contentType, long sizeBytes, String checksumSha256)
+            throws IOException {
+        return write(key, source, contentType, sizeBytes, checksumSha256);
+    }
+
+    @Override
+    public Optional<ObjectInfo> head(String key) {
+        Path metadata = metadataPath(key);
+        if (!Files.exists(objectPath(key)) || !Files.exists(metadata)) {
+            return Optional.empty();
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(metadata)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.error("Failed to read metadata of local object: {}", key, e);
+            throw new BusinessException("Failed to inspect file in storage");
+        }
+
+        return Optional.of(new ObjectInfo(
+                Long.parseLong(properties.getProperty("size")),
+                properties.getProperty("contentType"),
+                properties.getProperty("checksumSha256")));
+    }
+
+    @Override
+    public InputStream openRange(String key, long start, long endInclusive) {
+        try {
+            FileChannel channel = FileChannel.open(objectPath(key), StandardOpenOption.READ);
+            channel.position(start);
+            return new RangeInputStream(Channels.newInputStream(channel), endInclusive - start + 1);
+        } catch (IOException e) {
+            log.error("Failed to read local object: {}", key, e);
+            throw new BusinessException("Failed to read statement from storage");
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(objectPath(key));
+            Files.deleteIfExists(metadataPath(key));
+        } catch (IOException e) {
+            log.error("Failed to delete local object: {}", key, e);
+            throw new BusinessException("Failed to delete statement from storage");
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteBatch(Collection<String> keys) {
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (String key : keys) {
+            try {
+                delete(key);
+            } catch (RuntimeException e) {
+                failed.put(key, e.getMessage());
+            }
+        }
+        return failed;
+    }
+
+    // Local listings are small enough to return in a single page
+    @Override
+    public ListPage list(String prefix, String delimiter, String continuationToken) {
+        String directory = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+        Path start = directory.isEmpty() ? objectsRoot : resolveWithin(objectsRoot, directory);
+        if (!Files.isDirectory(start)) {
+            return new ListPage(List.of(), List.of(), null);
+        }
+
+        List<ListedObject> objects = new ArrayList<>();
+        Set<String> commonPrefixes = new TreeSet<>();
+        try (Stream<Path> files = Files.walk(start)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String key = objectsRoot.relativize(file).toString().replace(File.separatorChar, '/');
+                if (!key.startsWith(prefix)) {
+                    continue;
+                }
+                int boundary = delimiter != null ? key.indexOf(delimiter, prefix.length()) : -1;
+                if (boundary >= 0) {
+                    commonPrefixes.add(key.substring(0, boundary + delimiter.length()));
+                    continue;
+                }
+                objects.add(new ListedObject(key, Files.size(file), Files.getLastModifiedTime(file).toInstant()));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Failed to list local objects under: {}", prefix, e);
+            throw new BusinessException("Failed to list storage objects");
+        }
+
+        objects.sort(Comparator.comparing(ListedObject::key));
+        return new ListPage(objects, List.copyOf(commonPrefixes), null);
+    }
+
+    // Parts are kept as <uploadId>/<partNumber>.<eTag> under tmp, so completion can only pick up the exact
+    // bytes a recorded ETag refers to
+    @Override
+    public String createMultipartUpload(String key, String contentType) {
+        String uploadId = UUID.randomUUID().toString();
+        try {
+            Path uploadDirectory = Files.createDirectories(tempRoot.resolve(uploadId));
+            Files.writeString(uploadDirectory.resolve(CONTENT_TYPE_FILE), contentType);
+            return uploadId;
+        } catch (IOException e) {
+            log.error("Failed to start local multipart upload: {}", key, e);
+            throw new BusinessException("Failed to upload file to storage");
+        }
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length) {
+        Path uploadDirectory = multipartDirectory(uploadId);
+        byte[] part = Arrays.copyOf(buffer, length);
+        String eTag = HexFormat.of().formatHex(newDigest("MD5").digest(part));
+        Path temp = uploadDirectory.resolve(partNumber + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.write(temp, part, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC);
+            // A retried part replaces the earlier one, as it does in S3
+            try (DirectoryStream<Path> previous = Files.newDirectoryStream(uploadDirectory, partNumber + ".*")) {
+                for (Path earlier : previous) {
+                    if (!earlier.equals(temp)) {
+                        Files.deleteIfExists(earlier);
+                    }
+                }
+            }
+            Files.move(temp, uploadDirectory.resolve(partNumber + "." + eTag), StandardCopyOption.ATOMIC_MOVE);
+            return eTag;
+        } catch (IOException e) {
+            log.error("Failed to write part {} of local object: {}", partNumber, key, e);
+            throw new BusinessException("Failed to upload file to storage");
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<StoredPart> parts) {
+        Path uploadDirectory = multipartDirectory(uploadId);
+        List<InputStream> streams = new ArrayList<>();
+        try {
+            for (StoredPart part : parts) {
+                Path partFile = uploadDirectory.resolve(part.partNumber() + "." + part.eTag());
+                if (!Files.exists(partFile)) {
+                    throw new BusinessException("Failed to assemble uploaded file");
+                }
+                streams.add(Files.newInputStream(partFile));
+            }
+
+            String contentType = Files.readString(uploadDirectory.resolve(CONTENT_TYPE_FILE));
+            write(key, new SequenceInputStream(Collections.enumeration(streams)), contentType, null, null);
+        } catch (IOException e) {
+            log.error("Failed to assemble local multipart upload {} for {}", uploadId, key, e);
+            throw new BusinessException("Failed to assemble uploaded file");
+        } finally {
+            streams.forEach(LocalStatementStorage::closeQuietly);
+        }
+        abortMultipartUpload(key, uploadId);
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        Path uploadDirectory = multipartDirectory(uploadId);
+        if (!Files.isDirectory(uploadDirectory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadDirectory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(uploadDirectory);
+        } catch (IOException e) {
+            log.error("Failed to abort local multipart upload {} for {}", uploadId, key, e);
+            throw new BusinessException("Failed to abort upload in storage");
+        }
+    }
+
+    @Override
+    public PresignedUpload presignUpload(String key, String contentType, long sizeBytes, String checksumSha256, Duration ttl) {
+        long expires = Instant.now().plus(ttl).getEpochSecond();
+        String signature = sign("PUT", key, contentType, Long.toString(sizeBytes), checksumSha256, Long.toString(expires));
+
+        // Values go in as template variables so '+' and '/' in base64 checksums are percent-encoded too
+        String url = UriComponentsBuilder.fromUriString(baseUrl + OBJECTS_PATH)
+                .queryParam("key", "{key}")
+                .queryParam("contentType", "{contentType}")
+                .queryParam("size", "{size}")
+                .queryParam("checksumSha256", "{checksumSha256}")
+                .queryParam("expires", "{expires}")
+                .queryParam("signature", "{signature}")
+                .encode()
+                .buildAndExpand(key, contentType, sizeBytes, checksumSha256, expires, signature)
+                .toUriString();
+
+        return new PresignedUpload(url, Map.of("Content-Type", contentType));
+    }
+
+    @Override
+    public String presignDownload(String key, String fileName, String contentType, Duration ttl) {
+        long expires = Instant.now().plus(ttl).getEpochSecond();
+        String signature = sign("GET", key, fileName, contentType, Long.toString(expires));
+
+        return UriComponentsBuilder.fromUriString(baseUrl + OBJECTS_PATH)
+                .queryParam("key", "{key}")
+                .queryParam("fileName", "{fileName}")
+                .queryParam("contentType", "{contentType}")
+                .queryParam("expires", "{expires}")
+                .queryParam("signature", "{signature}")
+                .encode()
+                .buildAndExpand(key, fileName, contentType, expires, signature)
+                .toUriString();
+    }
+
+    public boolean verifyUpload(String key, String contentType, long sizeBytes, String checksumSha256, long expires, String signature) {
+        return verify(signature, expires, "PUT", key, contentType, Long.toString(sizeBytes), checksumSha256, Long.toString(expires));
+    }
+
+    public boolean verifyDownload(String key, String fileName, String contentType, long expires, String signature) {
+        return verify(signature, expires, "GET", key, fileName, contentType, Long.toString(expires));
+    }
+
+    // Copies a whole object with channel-to-channel transfers, used to serve presigned local downloads
+    public long transferTo(String key, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(objectPath(key), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            WritableByteChannel target = Channels.newChannel(out);
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        }
+    }
+
+    private ObjectInfo write(String key, InputStream source, String contentType, Long expectedSize, String expectedChecksum)
+            throws IOException {
+        Path target = objectPath(key);
+        Path temp = tempRoot.resolve(UUID.randomUUID() + ".tmp");
+        MessageDigest digest = newSha256();
+
+        long size = 0;
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 ReadableByteChannel in = Channels.newChannel(new DigestInputStream(source, digest))) {
+                long transferred;
+                while ((transferred = out.transferFrom(in, size, TRANSFER_CHUNK)) > 0) {
+                    size += transferred;
+                }
+                out.force(true);
+            }
+
+            String checksum = Base64.getEncoder().encodeToString(digest.digest());
+            if (expectedSize != null && expectedSize != size) {
+                throw new ValidationException("Uploaded file size does not match reservation");
+            }
+            if (expectedChecksum != null && !expectedChecksum.equals(checksum)) {
+                throw new ValidationException("Uploaded file checksum does not match reservation");
+            }
+
+            ObjectInfo info = new ObjectInfo(size, contentType, checksum);
+            writeMetadata(key, info);
+
+            // Commit point: the rename is atomic, so head/openRange see either the old object or the whole new one
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return info;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeMetadata(String key, ObjectInfo info) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("size", Long.toString(info.sizeBytes()));
+        properties.setProperty("contentType", info.contentType());
+        properties.setProperty("checksumSha256", info.checksumSha256());
+
+        Path metadata = metadataPath(key);
+        Path temp = tempRoot.resolve(UUID.randomUUID() + ".meta");
+        try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.SYNC)) {
+            properties.store(out, null);
+        }
+        Files.createDirectories(metadata.getParent());
+        Files.move(temp, metadata, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path multipartDirectory(String uploadId) {
+        return resolveWithin(tempRoot, UUID.fromString(uploadId).toString());
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            log.debug("Failed to close part stream", e);
+        }
+    }
+
+    private Path objectPath(String key) {
+        return resolveWithin(objectsRoot, key);
+    }
+
+    private Path metadataPath(String key) {
+        return resolveWithin(metadataRoot, key + ".properties");
+    }
+
+    // Keys come from signed URLs as well as from the service, never let one escape the storage root
+    private static Path resolveWithin(Path root, String key) {
+        Path resolved = root.resolve(key).normalize();
+        if (!resolved.startsWith(root) || resolved.equals(root)) {
+            throw new ValidationException("Invalid storage key");
+        }
+        return resolved;
+    }
+
+    private boolean verify(String signature, long expires, String... fields) {
+        if (signature == null || Instant.now().getEpochSecond() >= expires) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                sign(fields).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String... fields) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(signingKey);
+            return SIGNATURE_ENCODER.encodeToString(
+                    mac.doFinal(String.join("\n", fields).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        return newDigest("SHA-256");
+    }
+
+    private static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (GeneralSecurityException e) {
+            throw new BusinessException("Failed to calculate checksum");
+        }
+    }
+
+    private static final class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package com.capitecfilestatement.storage;
+import com.capitecfilestatement.exception.BusinessException;
+import com.capitecfilestatement.service.ConcurrencyLimiter;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+@Slf4j
+public class S3StatementStorage implements StatementStorage {
+
+    private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
+    private final String bucketName;
+    private final int partSizeBytes;
+    // Null when unlimited; otherwise every S3 request holds a permit while it holds an HTTP connection
+    private final ConcurrencyLimiter connectionLimiter;
+
+    public S3StatementStorage(S3Client s3Client, S3Presigner s3Presigner, String bucketName, int partSizeBytes) {
+        this(s3Client, s3Presigner, bucketName, partSizeBytes, null);
+    }
+
+    public S3StatementStorage(
+            S3Client s3Client,
+            S3Presigner s3Presigner,
+            String bucketName,
+            int partSizeBytes,
+            ConcurrencyLimiter connectionLimiter) {
+        this.s3Client = s3Client;
+        this.s3Presigner = s3Presigner;
+        this.bucketName = bucketName;
+        this.partSizeBytes = Math.max(partSizeBytes, MIN_PART_SIZE);
+        this.connectionLimiter = connectionLimiter;
+    }
+
+    // Single pass over the source: SHA-256 as bytes go by, and never more than one part buffer
+    // in memory regardless of file size. A file known to be smaller than a part gets a buffer of its own size.
+    // Only the PUT or part uploads take a connection permit, never the reads from source between them
+    @Override
+    public ObjectInfo put(String key, InputStream source, String contentType, long expectedSizeBytes) throws IOException {
+        MessageDigest digest = newSha256();
+        byte[] buffer = new byte[StatementStorage.putBufferBytes(partSizeBytes, expectedSizeBytes)];
+
+        try (DigestInputStream in = new DigestInputStream(source, digest)) {
+            int filled = in.readNBytes(buffer, 0, buffer.length);
+            if (filled == buffer.length && buffer.length < partSizeBytes) {
+                // Longer than announced, carry on with a full part buffer
+                buffer = Arrays.copyOf(buffer, partSizeBytes);
+                filled += in.readNBytes(buffer, filled, buffer.length - filled);
+            }
+
+            long size;
+            if (filled < buffer.length) {
+                // Whole file fits in one part, a plain PUT is cheaper than a multipart upload
+                putObject(key, buffer, filled, contentType);
+                size = filled;
+            } else {
+                size = multipartUpload(key, in, buffer, filled, contentType);
+            }
+
+            return new ObjectInfo(size, contentType, Base64.getEncoder().encodeToString(digest.digest()));
+        }
+    }
+
+    @Override
+    public Optional<ObjectInfo> head(String key) {
+        return limited(() -> {
+            try {
+                HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .checksumMode(ChecksumMode.ENABLED)
+                        .build());
+                return Optional.of(new ObjectInfo(head.contentLength(), head.contentType(), head.checksumSHA256()));
+            } catch (NoSuchKeyException e) {
+                return Optional.empty();
+            } catch (Exception e) {
+                log.error("Failed to inspect S3 object: {}", key, e);
+                throw new BusinessException("Failed to inspect file in storage");
+            }
+        });
+    }
+
+    // The connection stays leased until the caller closes the stream, and so does the permit
+    @Override
+    public InputStream openRange(String key, long start, long endInclusive) {
+        if (connectionLimiter != null) {
+            connectionLimiter.acquire();
+        }
+        InputStream in;
+        try {
+            in = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .range("bytes=" + start + "-" + endInclusive)
+                    .build());
+        } catch (Exception e) {
+            releaseConnection();
+            log.error("Failed to read S3 object: {}", key, e);
+            throw new BusinessException("Failed to read statement from storage");
+        }
+        if (connectionLimiter == null) {
+            return in;
+        }
+
+        return new FilterInputStream(in) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        releaseConnection();
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void delete(String key) {
+        limited(() -> {
+            try {
+                s3Client.deleteObject(DeleteObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .build());
+            } catch (Exception e) {
+                log.error("Failed to delete S3 object: {}", key, e);
+                throw new BusinessException("Failed to delete statement from storage");
+            }
+        });
+    }
+
+    @Override
+    public Map<String, String> deleteBatch(Collection<String> keys) {
+        List<ObjectIdentifier> objects = keys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .toList();
+
+        DeleteObjectsResponse response = limited(() -> s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(objects).quiet(true).build())
+                .build()));
+
+        // Quiet mode only reports failures
+        Map<String, String> failed = new LinkedHashMap<>();
+        for (S3Error error : response.errors()) {
+            failed.put(error.key(), error.code() + ": " + error.message());
+        }
+        return failed;
+    }
+
+    @Override
+    public ListPage list(String prefix, String delimiter, String continuationToken) {
+        ListObjectsV2Response response = limited(() -> {
+            try {
+                return s3Client.listObjectsV2(ListObjectsV2Request.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .delimiter(delimiter)
+                        .continuationToken(continuationToken)
+                        .build());
+            } catch (Exception e) {
+                log.error("Failed to list S3 objects under: {}", prefix, e);
+                throw new BusinessException("Failed to list storage objects");
+            }
+        });
+
+        return new ListPage(
+                response.contents().stream()
+                        .map(object -> new ListedObject(object.key(), object.size(), object.lastModified()))
+                        .toList(),
+                response.commonPrefixes().stream()
+                        .map(CommonPrefix::prefix)
+                        .toList(),
+                Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null);
+    }
+
+    @Override
+    public String createMultipartUpload(String key, String contentType) {
+        return limited(() -> {
+            try {
+                return s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .serverSideEncryption(ServerSideEncryption.AES256)
+                        .build()).uploadId();
+            } catch (Exception e) {
+                log.error("Failed to start multipart upload to S3: {}", key, e);
+                throw new BusinessException("Failed to upload file to storage");
+            }
+        });
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length) {
+        return limited(() -> {
+            try {
+                return s3Client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .build(),
+                        partBody(buffer, length)).eTag();
+            } catch (Exception e) {
+                log.error("Failed to upload part {} of {} to S3", partNumber, key, e);
+                throw new BusinessException("Failed to upload file to storage");
+            }
+        });
+    }
+
+    // S3 rejects the completion if any recorded ETag no longer matches the stored part, so a part overwritten
+    // by a racing request can never end up in the object
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<StoredPart> parts) {
+        limited(() -> {
+            try {
+                s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder()
+                                .parts(parts.stream()
+                                        .map(part -> CompletedPart.builder()
+                                                .partNumber(part.partNumber())
+                                                .eTag(part.eTag())
+                                                .build())
+                                        .toList())
+                                .build())
+                        .build());
+            } catch (Exception e) {
+                log.error("Failed to complete multipart upload {} for {}", uploadId, key, e);
+                throw new BusinessException("Failed to assemble uploaded file");
+            }
+        });
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        limited(() -> {
+            try {
+                s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .build());
+            } catch (NoSuchUploadException e) {
+                log.debug("Multipart upload {} for {} already gone", uploadId, key);
+            } catch (Exception e) {
+                log.error("Failed to abort multipart upload {} for {}", uploadId, key, e);
+                throw new BusinessException("Failed to abort upload in storage");
+            }
+        });
+    }
+
+    // S3 rejects the PUT unless length, type, encryption and checksum match what was signed here
+    @Override
+    public PresignedUpload presignUpload(String key, String contentType, long sizeBytes, String checksumSha256, Duration ttl) {
+        PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(sizeBytes)
+                .checksumSHA256(checksumSha256)
+                .serverSideEncryption(ServerSideEncryption.AES256)
+                .build();
+
+        PresignedPutObjectRequest presignedRequest = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .putObjectRequest(putRequest)
+                .build());
+
+        Map<String, String> requiredHeaders = new LinkedHashMap<>();
+        presignedRequest.signedHeaders().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("host")) {
+                requiredHeaders.put(name, String.join(",", values));
+            }
+        });
+
+        return new PresignedUpload(presignedRequest.url().toString(), requiredHeaders);
+    }
+
+    @Override
+    public String presignDownload(String key, String fileName, String contentType, Duration ttl) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .responseContentDisposition("attachment; filename=\"" + fileName + "\"")
+                .responseContentType(contentType)
+                .build();
+
+        return s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .getObjectRequest(getObjectRequest)
+                .build()).url().toString();
+    }
+
+    private void putObject(String key, byte[] buffer, int length, String contentType) {
+        limited(() -> {
+            try {
+                PutObjectRequest putRequest = PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .contentLength((long) length)
+                        .serverSideEncryption(ServerSideEncryption.AES256)
+                        .build();
+
+                s3Client.putObject(putRequest, partBody(buffer, length));
+            } catch (Exception e) {
+                log.error("Failed to upload to S3: {}", key, e);
+                throw new BusinessException("Failed to upload file to storage");
+            }
+        });
+    }
+
+    private long multipartUpload(
+            String key,
+            InputStream in,
+            byte[] buffer,
+            int firstPartLength,
+            String contentType) throws IOException {
+
+        String uploadId = createMultipartUpload(key, contentType);
+
+        List<StoredPart> parts = new ArrayList<>();
+        long size = 0;
+        try {
+            int partNumber = 1;
+            int filled = firstPartLength;
+            while (filled > 0) {
+                parts.add(new StoredPart(partNumber, uploadPart(key, uploadId, partNumber, buffer, filled)));
+
+                size += filled;
+                partNumber++;
+                filled = in.readNBytes(buffer, 0, buffer.length);
+            }
+
+            completeMultipartUpload(key, uploadId, parts);
+        } catch (IOException | RuntimeException e) {
+            abortQuietly(key, uploadId);
+            throw e;
+        }
+
+        return size;
+    }
+
+    // Cleanup after a failed upload goes ahead without a permit, a busy limiter must not leave parts behind
+    private void abortQuietly(String key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (Exception e) {
+            log.warn("Failed to abort multipart upload {} for {}", uploadId, key, e);
+        }
+    }
+
+    private <T> T limited(Supplier<T> call) {
+        return connectionLimiter != null ? connectionLimiter.call(call) : call.get();
+    }
+
+    private void limited(Runnable call) {
+        limited(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private void releaseConnection() {
+        if (connectionLimiter != null) {
+            connectionLimiter.release();
+        }
+    }
+
+    // RequestBody.fromBytes copies the array; wrapping the buffer in a stream avoids a second part-sized allocation
+    private static RequestBody partBody(byte[] buffer, int length) {
+        return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BusinessException("Failed to calculate checksum");
+        }
+    }
+}
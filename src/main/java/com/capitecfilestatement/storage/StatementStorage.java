@@ -0,0 +1,74 @@
+package com.capitecfilestatement.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Where statement bytes live. StatementService only talks to this, so the service can run against S3
+// in production and against the local filesystem for benchmarks and load tests.
+public interface StatementStorage {
+
+    // DeleteObjects accepts at most 1000 keys per request
+    int MAX_DELETE_BATCH = 1000;
+
+    // S3 rejects multipart parts smaller than 5MB (except the last one)
+    int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    // Streams source to key in one pass and reports what was stored; checksums are base64 SHA-256.
+    // expectedSizeBytes (-1 if unknown) only sizes buffers, the stored size is whatever source delivers
+    ObjectInfo put(String key, InputStream source, String contentType, long expectedSizeBytes) throws IOException;
+
+    Optional<ObjectInfo> head(String key);
+
+    // Caller closes the stream; endInclusive follows HTTP Range semantics
+    InputStream openRange(String key, long start, long endInclusive);
+
+    void delete(String key);
+
+    // Deletes up to MAX_DELETE_BATCH keys in one call. Returns the keys that could not be deleted, with the
+    // reason; keys that were already gone count as deleted
+    Map<String, String> deleteBatch(Collection<String> keys);
+
+    // One page of keys under prefix in ascending binary order. With a delimiter, keys below the next delimiter
+    // are rolled up into commonPrefixes; nextContinuationToken is null on the last page
+    ListPage list(String prefix, String delimiter, String continuationToken);
+
+    // Multipart uploads back resumable upload sessions: one part per chunk, assembled on complete.
+    // Every part but the last must be at least MIN_PART_SIZE bytes
+    String createMultipartUpload(String key, String contentType);
+
+    // Returns the part's ETag, which must be passed back to completeMultipartUpload
+    String uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length);
+
+    void completeMultipartUpload(String key, String uploadId, List<StoredPart> parts);
+
+    void abortMultipartUpload(String key, String uploadId);
+
+    // Upload URL bound to the given type, length and checksum, so the client cannot store anything else
+    PresignedUpload presignUpload(String key, String contentType, long sizeBytes, String checksumSha256, Duration ttl);
+
+    String presignDownload(String key, String fileName, String contentType, Duration ttl);
+
+    // Part buffer a put allocates: one part, or expected + 1 bytes for a file known to be smaller than a part,
+    // so a file of exactly the expected size is seen to end within the buffer
+    static int putBufferBytes(int partSizeBytes, long expectedSizeBytes) {
+        int partSize = Math.max(partSizeBytes, MIN_PART_SIZE);
+        return expectedSizeBytes < 0 ? partSize : (int) Math.min(partSize, expectedSizeBytes + 1);
+    }
+
+    record StoredPart(int partNumber, String eTag) {}
+
+    record ObjectInfo(long sizeBytes, String contentType, String checksumSha256) {}
+
+    record ListedObject(String key, long sizeBytes, Instant lastModified) {}
+
+    record ListPage(List<ListedObject> objects, List<String> commonPrefixes, String nextContinuationToken) {}
+
+    // requiredHeaders must be sent verbatim with the upload request
+    record PresignedUpload(String url, Map<String, String> requiredHeaders) {}
+}
@@ -0,0 +1,149 @@
+package com.capitecfilestatement.storage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+// Records statement.storage.latency per operation and outcome, so storage time shows up separately from
+// database time in the request metrics whichever backend is configured.
+public class TimedStatementStorage implements StatementStorage {
+
+    private static final String METRIC = "statement.storage.latency";
+
+    private final StatementStorage delegate;
+    private final MeterRegistry meterRegistry;
+    private final String backend;
+
+    public TimedStatementStorage(StatementStorage delegate, MeterRegistry meterRegistry, String backend) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.backend = backend;
+    }
+
+    @Override
+    public ObjectInfo put(String key, InputStream source, String contentType, long expectedSizeBytes) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            ObjectInfo info = delegate.put(key, source, contentType, expectedSizeBytes);
+            outcome = "success";
+            return info;
+        } finally {
+            sample.stop(timer("put", outcome));
+        }
+    }
+
+    @Override
+    public Optional<ObjectInfo> head(String key) {
+        return timed("head", () -> delegate.head(key));
+    }
+
+    // Timed until the caller closes the stream, so the transfer is included and not just time to first byte
+    @Override
+    public InputStream openRange(String key, long start, long endInclusive) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        InputStream in;
+        try {
+            in = delegate.openRange(key, start, endInclusive);
+        } catch (RuntimeException e) {
+            sample.stop(timer("read", "error"));
+            throw e;
+        }
+
+        return new FilterInputStream(in) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    sample.stop(timer("read", "success"));
+                }
+                super.close();
+            }
+        };
+    }
+
+    @Override
+    public void delete(String key) {
+        timed("delete", () -> {
+            delegate.delete(key);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, String> deleteBatch(Collection<String> keys) {
+        return timed("delete_batch", () -> delegate.deleteBatch(keys));
+    }
+
+    @Override
+    public ListPage list(String prefix, String delimiter, String continuationToken) {
+        return timed("list", () -> delegate.list(prefix, delimiter, continuationToken));
+    }
+
+    @Override
+    public String createMultipartUpload(String key, String contentType) {
+        return timed("multipart_create", () -> delegate.createMultipartUpload(key, contentType));
+    }
+
+    @Override
+    public String uploadPart(String key, String uploadId, int partNumber, byte[] buffer, int length) {
+        return timed("multipart_part", () -> delegate.uploadPart(key, uploadId, partNumber, buffer, length));
+    }
+
+    @Override
+    public void completeMultipartUpload(String key, String uploadId, List<StoredPart> parts) {
+        timed("multipart_complete", () -> {
+            delegate.completeMultipartUpload(key, uploadId, parts);
+            return null;
+        });
+    }
+
+    @Override
+    public void abortMultipartUpload(String key, String uploadId) {
+        timed("multipart_abort", () -> {
+            delegate.abortMultipartUpload(key, uploadId);
+            return null;
+        });
+    }
+
+    @Override
+    public PresignedUpload presignUpload(String key, String contentType, long sizeBytes, String checksumSha256, Duration ttl) {
+        return timed("presign_upload", () -> delegate.presignUpload(key, contentType, sizeBytes, checksumSha256, ttl));
+    }
+
+    @Override
+    public String presignDownload(String key, String fileName, String contentType, Duration ttl) {
+        return timed("presign_download", () -> delegate.presignDownload(key, fileName, contentType, ttl));
+    }
+
+    private <T> T timed(String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = "success";
+            return result;
+        } finally {
+            sample.stop(timer(operation, outcome));
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return Timer.builder(METRIC)
+                .description("Latency of statement storage operations")
+                .tag("backend", backend)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -1,10 +1,12 @@
 package com.capitecfilestatement.task;
-import com.capitecfilestatement.repository.DownloadTokenRepository;
+import com.capitecfilestatement.service.ExpiredTokenPurger;
+import com.capitecfilestatement.service.IdempotencyService;
+import com.capitecfilestatement.service.StatementService;
+import com.capitecfilestatement.service.UploadSessionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 
@@ -13,16 +15,55 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class CleanupTask {
 
-    private final DownloadTokenRepository downloadTokenRepository;
+    private final ExpiredTokenPurger expiredTokenPurger;
+    private final StatementService statementService;
+    private final UploadSessionService uploadSessionService;
+    private final IdempotencyService idempotencyService;
 
-    @Transactional
     @Scheduled(cron = "0 0 * * * *") // Every hour
     public void cleanupExpiredTokens() {
-        log.info("Starting cleanup of expired download tokens");
+        expiredTokenPurger.purge();
+    }
+
+    @Scheduled(cron = "0 30 * * * *") // Every hour, offset from the token cleanup
+    public void cleanupExpiredIdempotencyKeys() {
+        int deleted = idempotencyService.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            log.info("Cleaned up {} expired idempotency keys", deleted);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${upload-reservation.reaper-interval-ms:300000}")
+    public void reapExpiredUploadReservations() {
+        // Grace minute so a finalize racing the expiry boundary is not reaped underneath
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(1);
+
+        int reaped;
+        int total = 0;
+        do {
+            reaped = statementService.reapExpiredUploadReservations(cutoff);
+            total += reaped;
+        } while (reaped > 0);
+
+        if (total > 0) {
+            log.info("Reaped {} expired upload reservations", total);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${upload-session.reaper-interval-ms:300000}")
+    public void reapExpiredUploadSessions() {
+        // Same grace minute as reservations, for a chunk or complete racing the expiry boundary
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(1);
 
-        LocalDateTime cutoff = LocalDateTime.now().minusDays(1);
-        int deleted = downloadTokenRepository.deleteExpiredTokens(cutoff);
+        int reaped;
+        int total = 0;
+        do {
+            reaped = uploadSessionService.reapExpiredSessions(cutoff);
+            total += reaped;
+        } while (reaped > 0);
 
-        log.info("Cleaned up {} expired download tokens", deleted);
+        if (total > 0) {
+            log.info("Reaped {} expired upload sessions", total);
+        }
     }
 }
@@ -0,0 +1,18 @@
+-- Upload reservations for direct-to-storage (presigned PUT) uploads
+CREATE TABLE upload_reservations (
+                                     id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                     customer_id UUID NOT NULL,
+                                     statement_period VARCHAR(20) NOT NULL,
+                                     s3_key VARCHAR(500) NOT NULL UNIQUE,
+                                     file_name VARCHAR(255) NOT NULL,
+                                     content_type VARCHAR(50) NOT NULL,
+                                     file_size_bytes BIGINT NOT NULL,
+                                     checksum_sha256 VARCHAR(255) NOT NULL,
+                                     expires_at TIMESTAMP NOT NULL,
+                                     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                     CONSTRAINT fk_reservation_customer FOREIGN KEY (customer_id)
+                                         REFERENCES customers(id) ON DELETE CASCADE,
+                                     CONSTRAINT unique_reservation_customer_period UNIQUE (customer_id, statement_period)
+);
+
+CREATE INDEX idx_reservation_expires ON upload_reservations(expires_at);
@@ -0,0 +1,6 @@
+-- Statement listing pages by (statement_period, id) descending within a customer
+CREATE INDEX idx_statement_customer_period_id
+    ON account_statements(customer_id, statement_period DESC, id DESC);
+
+-- Superseded by the leading customer_id column of the index above
+DROP INDEX IF EXISTS idx_statement_customer;
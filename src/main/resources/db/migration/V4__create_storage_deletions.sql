@@ -0,0 +1,11 @@
+-- Outbox of storage objects to delete, written in the same transaction as the row that owned them
+CREATE TABLE storage_deletions (
+                                   id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                   s3_key VARCHAR(500) NOT NULL,
+                                   attempts INTEGER NOT NULL DEFAULT 0,
+                                   next_attempt_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                   last_error TEXT,
+                                   created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_storage_deletion_next_attempt ON storage_deletions(next_attempt_at);
@@ -0,0 +1,31 @@
+-- Resumable chunked uploads; each chunk is one multipart part in storage
+CREATE TABLE upload_sessions (
+                                 id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                 customer_id UUID NOT NULL,
+                                 statement_period VARCHAR(20) NOT NULL,
+                                 s3_key VARCHAR(500) NOT NULL UNIQUE,
+                                 storage_upload_id VARCHAR(1024) NOT NULL,
+                                 file_name VARCHAR(255) NOT NULL,
+                                 content_type VARCHAR(50) NOT NULL,
+                                 file_size_bytes BIGINT NOT NULL,
+                                 chunk_size_bytes INTEGER NOT NULL,
+                                 received_bytes BIGINT NOT NULL DEFAULT 0,
+                                 expires_at TIMESTAMP NOT NULL,
+                                 created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                 version BIGINT NOT NULL DEFAULT 0,
+                                 CONSTRAINT fk_upload_session_customer FOREIGN KEY (customer_id)
+                                     REFERENCES customers(id) ON DELETE CASCADE,
+                                 CONSTRAINT unique_upload_session_customer_period UNIQUE (customer_id, statement_period)
+);
+
+CREATE INDEX idx_upload_session_expires ON upload_sessions(expires_at);
+
+CREATE TABLE upload_session_parts (
+                                      session_id UUID NOT NULL,
+                                      part_number INTEGER NOT NULL,
+                                      e_tag VARCHAR(255) NOT NULL,
+                                      size_bytes INTEGER NOT NULL,
+                                      PRIMARY KEY (session_id, part_number),
+                                      CONSTRAINT fk_upload_session_part_session FOREIGN KEY (session_id)
+                                          REFERENCES upload_sessions(id) ON DELETE CASCADE
+);
@@ -0,0 +1,16 @@
+-- Responses to requests sent with an Idempotency-Key, replayed to retries within the retention window
+CREATE TABLE idempotency_keys (
+                                  id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                  customer_id UUID NOT NULL,
+                                  idempotency_key VARCHAR(255) NOT NULL,
+                                  request_fingerprint VARCHAR(64) NOT NULL,
+                                  status VARCHAR(20) NOT NULL,
+                                  response_body TEXT,
+                                  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                  expires_at TIMESTAMP NOT NULL,
+                                  CONSTRAINT fk_idempotency_key_customer FOREIGN KEY (customer_id)
+                                      REFERENCES customers(id) ON DELETE CASCADE,
+                                  CONSTRAINT unique_idempotency_key_customer UNIQUE (customer_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_key_expires ON idempotency_keys(expires_at);
@@ -0,0 +1,3 @@
+-- A consumed link can be resumed only from the client that consumed it, a limited number of times
+ALTER TABLE download_tokens ADD COLUMN used_ip VARCHAR(45);
+ALTER TABLE download_tokens ADD COLUMN resume_count INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,106 @@
+package com.capitecfilestatement.security;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DownloadTokenSignerTest {
+
+    private static final String SECRET = "download-link-test-secret";
+
+    private final DownloadTokenSigner signer = new DownloadTokenSigner(SECRET);
+
+    @Test
+    void verifiesWhatItSigns() {
+        DownloadTokenSigner.Payload payload = payload(Instant.now().plusSeconds(300));
+
+        assertThat(signer.verify(signer.sign(payload))).contains(payload);
+    }
+
+    @Test
+    void anotherInstanceWithTheSameSecretAccepts() {
+        DownloadTokenSigner.Payload payload = payload(Instant.now().plusSeconds(300));
+
+        assertThat(new DownloadTokenSigner(SECRET).verify(signer.sign(payload))).contains(payload);
+    }
+
+    @Test
+    void rejectsExpiredToken() {
+        assertThat(signer.verify(signer.sign(payload(Instant.now().minusSeconds(1))))).isEmpty();
+        assertThat(signer.verify(signer.sign(payload(Instant.now())))).isEmpty();
+    }
+
+    @Test
+    void rejectsTamperedPayload() {
+        String token = signer.sign(payload(Instant.now().plusSeconds(300)));
+        byte[] body = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+        // Swap in another customer
+        body[20] ^= 1;
+
+        assertThat(signer.verify(encode(body) + token.substring(token.indexOf('.')))).isEmpty();
+    }
+
+    @Test
+    void rejectsTamperedSignature() {
+        String token = signer.sign(payload(Instant.now().plusSeconds(300)));
+        byte[] signature = Base64.getUrlDecoder().decode(token.substring(token.indexOf('.') + 1));
+        signature[0] ^= 1;
+
+        assertThat(signer.verify(token.substring(0, token.indexOf('.') + 1) + encode(signature))).isEmpty();
+    }
+
+    @Test
+    void rejectsTokenSignedWithAnotherSecret() {
+        String token = new DownloadTokenSigner("some-other-secret").sign(payload(Instant.now().plusSeconds(300)));
+
+        assertThat(signer.verify(token)).isEmpty();
+    }
+
+    @Test
+    void rejectsUnknownVersionEvenWhenCorrectlySigned() throws Exception {
+        String token = signer.sign(payload(Instant.now().plusSeconds(300)));
+        byte[] body = Base64.getUrlDecoder().decode(token.substring(0, token.indexOf('.')));
+        body[0] = 2;
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(SigningKeys.derive(SECRET, "download-link"));
+
+        assertThat(signer.verify(encode(body) + "." + encode(mac.doFinal(body)))).isEmpty();
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        String token = signer.sign(payload(Instant.now().plusSeconds(300)));
+
+        assertThat(signer.verify("no-separator")).isEmpty();
+        assertThat(signer.verify("not base64!.also not!")).isEmpty();
+        assertThat(signer.verify(".")).isEmpty();
+        assertThat(signer.verify(token.substring(0, token.indexOf('.')) + ".")).isEmpty();
+        assertThat(signer.verify(token.substring(4))).isEmpty();
+    }
+
+    @Test
+    void signsWithAKeyDerivedForDownloadLinksOnly() {
+        assertThat(SigningKeys.derive(SECRET, "download-link").getEncoded())
+                .isEqualTo(SigningKeys.derive(SECRET, "download-link").getEncoded())
+                .isNotEqualTo(SigningKeys.derive(SECRET, "statement-storage.local").getEncoded())
+                .isNotEqualTo(SECRET.getBytes());
+        assertThatThrownBy(() -> new DownloadTokenSigner(" ")).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static DownloadTokenSigner.Payload payload(Instant expiresAt) {
+        // Tokens carry the expiry in whole seconds
+        return new DownloadTokenSigner.Payload(
+                UUID.randomUUID(), UUID.randomUUID(), expiresAt.truncatedTo(ChronoUnit.SECONDS), UUID.randomUUID());
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,130 @@
+package com.capitecfilestatement.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    // 5 per second, so one token every 200ms
+    private static final RateLimiter.Limit LIMIT = new RateLimiter.Limit(3, 5);
+    private static final long INTERVAL = SECOND / 5;
+
+    private RateLimiter rateLimiter;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        rateLimiter = new RateLimiter(new SimpleMeterRegistry(), 1000, 600);
+        now = System.nanoTime();
+    }
+
+    @Test
+    void newBucketAllowsTheFullBurst() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now)).isZero();
+        }
+
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now)).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void rejectedRequestDoesNotConsumeAToken() {
+        drain("client");
+
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now)).isEqualTo(INTERVAL);
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now)).isEqualTo(INTERVAL);
+
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now + INTERVAL)).isZero();
+    }
+
+    @Test
+    void reportsTheWaitUntilTheNextToken() {
+        drain("client");
+
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now + INTERVAL / 4)).isEqualTo(INTERVAL * 3 / 4);
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now + INTERVAL - 1)).isEqualTo(1);
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now + INTERVAL)).isZero();
+    }
+
+    @Test
+    void admitsRequestsPacedAtTheRateIndefinitely() {
+        drain("client");
+
+        for (int i = 1; i <= 50; i++) {
+            assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, now + i * INTERVAL)).isZero();
+        }
+    }
+
+    @Test
+    void idleBucketRefillsOnlyUpToTheBurst() {
+        drain("client");
+        long later = now + 60 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, later)).isZero();
+        }
+        assertThat(rateLimiter.tryAcquire("login", "client", LIMIT, later)).isPositive();
+    }
+
+    @Test
+    void bucketsAreKeptPerScopeAndSubject() {
+        drain("client");
+
+        assertThat(rateLimiter.tryAcquire("login", "other-client", LIMIT, now)).isZero();
+        assertThat(rateLimiter.tryAcquire("upload", "client", LIMIT, now)).isZero();
+    }
+
+    @Test
+    void concurrentCallersNeverGetMoreThanTheBurst() throws Exception {
+        RateLimiter.Limit limit = new RateLimiter.Limit(50, 1);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (rateLimiter.tryAcquire("login", "client", limit, now) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(allowed).hasValue(50);
+    }
+
+    @Test
+    void limitIsDisabledWithoutBurstOrRate() {
+        assertThat(new RateLimiter.Limit(3, 5).enabled()).isTrue();
+        assertThat(new RateLimiter.Limit(0, 5).enabled()).isFalse();
+        assertThat(new RateLimiter.Limit(3, 0).enabled()).isFalse();
+    }
+
+    private void drain(String subject) {
+        while (rateLimiter.tryAcquire("login", subject, LIMIT, now) == 0) {
+            // Take every token of the burst
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.repository.ActiveDownloadToken;
+import com.capitecfilestatement.repository.DownloadTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ActiveLinkTrackerTest {
+
+    private final UUID statementId = UUID.randomUUID();
+
+    private DownloadTokenRepository downloadTokenRepository;
+    private ActiveLinkTracker tracker;
+    private long now;
+
+    @BeforeEach
+    void setUp() {
+        downloadTokenRepository = mock(DownloadTokenRepository.class);
+        tracker = new ActiveLinkTracker(downloadTokenRepository, new SimpleMeterRegistry());
+        now = Instant.now().getEpochSecond();
+    }
+
+    @Test
+    void rejectsLinksPastTheLimit() {
+        UUID customerId = UUID.randomUUID();
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 2)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 2)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, statementId, "c", at(now + 60), 2)).isFalse();
+
+        // Other customers have their own count
+        assertThat(tracker.tryAcquire(UUID.randomUUID(), statementId, "d", at(now + 60), 2)).isTrue();
+    }
+
+    @Test
+    void releaseFreesTheSlotOnce() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 2);
+        tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 2);
+
+        tracker.release("a");
+        tracker.release("a");
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "c", at(now + 60), 2)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, statementId, "d", at(now + 60), 2)).isFalse();
+    }
+
+    @Test
+    void expiresLinksWhenTheWheelReachesTheirSecond() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "a", at(now + 5), 1);
+
+        tracker.advance(now + 4);
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isFalse();
+
+        tracker.advance(now + 5);
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isTrue();
+    }
+
+    @Test
+    void keepsLinksDueOnALaterRevolution() {
+        UUID customerId = UUID.randomUUID();
+        // Lands in the same slot as now + 10, one full revolution later
+        long expiresAt = now + 1024 + 10;
+        tracker.tryAcquire(customerId, statementId, "a", at(expiresAt), 1);
+
+        tracker.advance(now + 10);
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isFalse();
+
+        tracker.advance(expiresAt);
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(expiresAt + 60), 1)).isTrue();
+    }
+
+    @Test
+    void catchesUpAfterALongPause() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "a", at(now + 30), 1);
+
+        tracker.advance(now + 5000);
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 6000), 1)).isTrue();
+    }
+
+    @Test
+    void linkAlreadyPastTheWheelIsReleasedAtOnce() {
+        UUID customerId = UUID.randomUUID();
+        tracker.advance(now + 10);
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "a", at(now + 5), 1)).isTrue();
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isTrue();
+    }
+
+    @Test
+    void rolledBackLinkIsReleased() {
+        UUID customerId = UUID.randomUUID();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 1);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isTrue();
+    }
+
+    @Test
+    void committedLinkStaysCounted() {
+        UUID customerId = UUID.randomUUID();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 1);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isFalse();
+    }
+
+    @Test
+    void seedSkipsLinksAlreadyRegistered() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 3);
+        when(downloadTokenRepository.findActiveTokens(any())).thenReturn(List.of(
+                activeToken(customerId, "a", now + 60),
+                activeToken(customerId, "b", now + 60)));
+
+        tracker.seedFromDatabase();
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "c", at(now + 60), 3)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, statementId, "d", at(now + 60), 3)).isFalse();
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedTheLimit() throws Exception {
+        UUID customerId = UUID.randomUUID();
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String key = "link-" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    if (tracker.tryAcquire(customerId, statementId, key, at(now + 60), 25)) {
+                        acquired.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(acquired).hasValue(25);
+    }
+
+    @Test
+    void linkScheduledWhileItsSecondIsSweptIsNotLeftBehind() throws Exception {
+        UUID filler = UUID.randomUUID();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 1; i <= 100; i++) {
+                long tick = now + i;
+                // Links due a revolution later share the slot and keep the sweep busy in it
+                for (int f = 0; f < 500; f++) {
+                    tracker.tryAcquire(filler, statementId, "filler-" + i + "-" + f, at(tick + 1024), Integer.MAX_VALUE);
+                }
+                List<UUID> customers = new ArrayList<>();
+                for (int c = 0; c < 200; c++) {
+                    customers.add(UUID.randomUUID());
+                }
+
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?> sweep = executor.submit(() -> {
+                    start.await();
+                    tracker.advance(tick);
+                    return null;
+                });
+                Future<?> acquire = executor.submit(() -> {
+                    start.await();
+                    for (UUID customerId : customers) {
+                        tracker.tryAcquire(customerId, statementId, customerId.toString(), at(tick), 1);
+                    }
+                    return null;
+                });
+                start.countDown();
+                sweep.get();
+                acquire.get();
+
+                // Whichever side won, a link due at the swept second must not still hold its slot
+                for (UUID customerId : customers) {
+                    assertThat(tracker.tryAcquire(customerId, statementId, "next-" + customerId, at(tick + 60), 1))
+                            .as("link due at tick %d", tick)
+                            .isTrue();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void deletingAStatementReleasesItsLinks() {
+        UUID customerId = UUID.randomUUID();
+        UUID otherStatement = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 2);
+        tracker.tryAcquire(customerId, otherStatement, "b", at(now + 60), 2);
+
+        tracker.releaseStatements(customerId, List.of(statementId));
+
+        assertThat(tracker.tryAcquire(customerId, otherStatement, "c", at(now + 60), 2)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, otherStatement, "d", at(now + 60), 2)).isFalse();
+    }
+
+    @Test
+    void deletedStatementLinksAreReleasedOnlyOnCommit() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "a", at(now + 60), 1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tracker.releaseStatements(customerId, List.of(statementId));
+            assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isFalse();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(tracker.tryAcquire(customerId, statementId, "b", at(now + 60), 1)).isTrue();
+    }
+
+    @Test
+    void limitIsRecountedFromTheTableBeforeRejecting() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquireOrRecount(customerId, statementId, "a", at(now + 60), 2);
+        tracker.tryAcquireOrRecount(customerId, statementId, "b", at(now + 60), 2);
+        // "a" was consumed through another instance
+        when(downloadTokenRepository.findActiveTokensByCustomer(any(), any()))
+                .thenReturn(List.of(activeToken(customerId, "b", now + 60)));
+
+        assertThat(tracker.tryAcquireOrRecount(customerId, statementId, "c", at(now + 60), 2)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, statementId, "d", at(now + 60), 2)).isFalse();
+    }
+
+    @Test
+    void recountPicksUpLinksIssuedElsewhere() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquireOrRecount(customerId, statementId, "a", at(now + 60), 2);
+        tracker.tryAcquireOrRecount(customerId, statementId, "b", at(now + 60), 2);
+        when(downloadTokenRepository.findActiveTokensByCustomer(any(), any())).thenReturn(List.of(
+                activeToken(customerId, "a", now + 60),
+                activeToken(customerId, "b", now + 60),
+                activeToken(customerId, "remote", now + 60)));
+
+        assertThat(tracker.tryAcquireOrRecount(customerId, statementId, "c", at(now + 60), 2)).isFalse();
+
+        // The remote link now counts here too: releasing both local ones leaves one slot
+        tracker.release("a");
+        tracker.release("b");
+        assertThat(tracker.tryAcquire(customerId, statementId, "d", at(now + 60), 2)).isTrue();
+        assertThat(tracker.tryAcquire(customerId, statementId, "e", at(now + 60), 2)).isFalse();
+    }
+
+    @Test
+    void recountKeepsLinksNotCommittedYet() {
+        UUID customerId = UUID.randomUUID();
+        when(downloadTokenRepository.findActiveTokensByCustomer(any(), any())).thenReturn(List.of());
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tracker.tryAcquireOrRecount(customerId, statementId, "a", at(now + 60), 1);
+
+            // The row for "a" is not visible to the recount, but the link is still being issued
+            assertThat(tracker.tryAcquireOrRecount(customerId, statementId, "b", at(now + 60), 1)).isFalse();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void inMemoryLinksSurviveARecount() {
+        UUID customerId = UUID.randomUUID();
+        tracker.tryAcquire(customerId, statementId, "signed", at(now + 60), 1);
+        when(downloadTokenRepository.findActiveTokensByCustomer(any(), any())).thenReturn(List.of());
+
+        assertThat(tracker.tryAcquireOrRecount(customerId, statementId, "a", at(now + 60), 1)).isFalse();
+    }
+
+    private static Instant at(long epochSecond) {
+        return Instant.ofEpochSecond(epochSecond);
+    }
+
+    private ActiveDownloadToken activeToken(UUID customerId, String token, long expiresAtEpochSecond) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAtEpochSecond), ZoneId.systemDefault());
+        return new ActiveDownloadToken() {
+            @Override
+            public UUID getCustomerId() {
+                return customerId;
+            }
+
+            @Override
+            public UUID getStatementId() {
+                return statementId;
+            }
+
+            @Override
+            public String getToken() {
+                return token;
+            }
+
+            @Override
+            public LocalDateTime getExpiresAt() {
+                return expiresAt;
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.entity.AuditLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class AuditLogWriterTest {
+
+    @TempDir
+    Path journalDir;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // The writer thread is never started, so the queue only fills up
+
+    @Test
+    void rejectDropsEventsThatDoNotFitWithoutJournalingThem() throws IOException {
+        AuditLogWriter writer = newWriter(AuditLogWriter.OverflowPolicy.REJECT, true);
+
+        writer.record(event());
+        writer.record(event());
+
+        assertThat(meterRegistry.counter("audit.events.rejected").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("audit.events.spilled").count()).isZero();
+        assertThat(journaledLines()).hasSize(1);
+    }
+
+    @Test
+    void spillLeavesEventsThatDoNotFitToTheReplay() throws IOException {
+        AuditLogWriter writer = newWriter(AuditLogWriter.OverflowPolicy.SPILL, true);
+
+        writer.record(event());
+        writer.record(event());
+
+        assertThat(meterRegistry.counter("audit.events.spilled").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("audit.events.rejected").count()).isZero();
+        assertThat(journaledLines()).hasSize(2);
+    }
+
+    @Test
+    void syncsBeforeAcknowledgingOnlyWhenConfigured() throws IOException {
+        newWriter(AuditLogWriter.OverflowPolicy.SPILL, true).record(event());
+        assertThat(meterRegistry.timer("audit.journal.sync.latency").count()).isEqualTo(1);
+
+        SimpleMeterRegistry deferred = new SimpleMeterRegistry();
+        new AuditLogWriter(mock(JdbcTemplate.class), new ObjectMapper().findAndRegisterModules(), deferred,
+                1, 10, 250, AuditLogWriter.OverflowPolicy.SPILL, journalDir.resolve("deferred.jsonl").toString(), false)
+                .record(event());
+        assertThat(deferred.timer("audit.journal.sync.latency").count()).isZero();
+    }
+
+    private AuditLogWriter newWriter(AuditLogWriter.OverflowPolicy policy, boolean fsyncBeforeAcknowledge) {
+        return new AuditLogWriter(mock(JdbcTemplate.class), new ObjectMapper().findAndRegisterModules(), meterRegistry,
+                1, 10, 250, policy, journalDir.resolve("audit.jsonl").toString(), fsyncBeforeAcknowledge);
+    }
+
+    private List<String> journaledLines() throws IOException {
+        try (Stream<Path> files = Files.list(journalDir)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("audit.jsonl."))
+                    .flatMap(file -> {
+                        try {
+                            return Files.readAllLines(file).stream();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .toList();
+        }
+    }
+
+    private static AuditLog event() {
+        return AuditLog.builder()
+                .action("DOWNLOAD")
+                .resourceType("STATEMENT")
+                .resourceId(UUID.randomUUID())
+                .build();
+    }
+}
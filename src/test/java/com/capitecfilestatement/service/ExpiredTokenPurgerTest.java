@@ -0,0 +1,78 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.repository.DownloadTokenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExpiredTokenPurgerTest {
+
+    private final CountDownLatch batchStarted = new CountDownLatch(1);
+    private final CountDownLatch finishBatch = new CountDownLatch(1);
+
+    private DownloadTokenRepository downloadTokenRepository;
+    private ClusterLock clusterLock;
+    private ExpiredTokenPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        downloadTokenRepository = mock(DownloadTokenRepository.class);
+        when(downloadTokenRepository.deleteExpiredBatch(any(), anyInt())).thenAnswer(invocation -> {
+            batchStarted.countDown();
+            finishBatch.await();
+            return 0;
+        });
+        clusterLock = mock(ClusterLock.class);
+        when(clusterLock.runExclusively(anyString(), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+
+        purger = new ExpiredTokenPurger(downloadTokenRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                clusterLock, new SimpleMeterRegistry(), 100, 0, 24, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        finishBatch.countDown();
+        purger.shutdown();
+    }
+
+    @Test
+    void returnsWhileTheRunIsStillGoing() throws Exception {
+        purger.purge();
+
+        // Still blocked in the first batch, yet purge() has returned
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(finishBatch.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void skipsWhileARunIsInProgress() throws Exception {
+        purger.purge();
+        assertThat(batchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        purger.purge();
+        finishBatch.countDown();
+
+        verify(downloadTokenRepository, timeout(5000)).findOldestExpiry();
+        verify(clusterLock, times(1)).runExclusively(anyString(), any());
+    }
+}
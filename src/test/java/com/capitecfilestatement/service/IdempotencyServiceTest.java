@@ -0,0 +1,273 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.entity.IdempotencyRecord;
+import com.capitecfilestatement.exception.BusinessException;
+import com.capitecfilestatement.exception.IdempotencyConflictException;
+import com.capitecfilestatement.exception.ValidationException;
+import com.capitecfilestatement.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private final UUID customerId = UUID.randomUUID();
+    private final Map<String, IdempotencyRecord> records = new ConcurrentHashMap<>();
+
+    private SimpleMeterRegistry meterRegistry;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    void setUp() {
+        // Stands in for idempotency_keys: one row per (customer, key), claimed with insert-if-absent
+        IdempotencyRecordRepository repository = mock(IdempotencyRecordRepository.class);
+        when(repository.tryClaim(any(), anyString(), anyString(), any(), any())).thenAnswer(invocation -> {
+            IdempotencyRecord record = IdempotencyRecord.builder()
+                    .customerId(invocation.getArgument(0))
+                    .idempotencyKey(invocation.getArgument(1))
+                    .requestFingerprint(invocation.getArgument(2))
+                    .status(IdempotencyRecord.Status.IN_PROGRESS)
+                    .createdAt(invocation.getArgument(3))
+                    .expiresAt(invocation.getArgument(4))
+                    .build();
+            return records.putIfAbsent(rowKey(record.getCustomerId(), record.getIdempotencyKey()), record) == null ? 1 : 0;
+        });
+        when(repository.findForUpdate(any(), anyString())).thenAnswer(invocation ->
+                Optional.ofNullable(records.get(rowKey(invocation.getArgument(0), invocation.getArgument(1)))));
+        doAnswer(invocation -> {
+            IdempotencyRecord record = invocation.getArgument(0);
+            records.remove(rowKey(record.getCustomerId(), record.getIdempotencyKey()));
+            return null;
+        }).when(repository).delete(any());
+
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyService = new IdempotencyService(
+                repository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                new ObjectMapper(),
+                meterRegistry,
+                24, 300, 5);
+    }
+
+    @Test
+    void firstRequestRunsAndRetriesReplayItsResponse() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+
+        IdempotencyService.Result<Response> first = idempotencyService.execute(
+                customerId, "key-1", "fp", Response.class, () -> new Response("created-" + runs.incrementAndGet()));
+        IdempotencyService.Result<Response> retry = idempotencyService.execute(
+                customerId, "key-1", "fp", Response.class, () -> new Response("created-" + runs.incrementAndGet()));
+
+        assertThat(first.replayed()).isFalse();
+        assertThat(retry.replayed()).isTrue();
+        assertThat(retry.body()).isEqualTo(first.body());
+        assertThat(runs).hasValue(1);
+        assertThat(records.get(rowKey(customerId, "key-1")).getStatus()).isEqualTo(IdempotencyRecord.Status.COMPLETED);
+    }
+
+    @Test
+    void keysAreScopedPerCustomer() throws Exception {
+        idempotencyService.execute(customerId, "key-1", "fp", Response.class, () -> new Response("a"));
+
+        IdempotencyService.Result<Response> other = idempotencyService.execute(
+                UUID.randomUUID(), "key-1", "fp", Response.class, () -> new Response("b"));
+
+        assertThat(other.replayed()).isFalse();
+        assertThat(other.body().value()).isEqualTo("b");
+    }
+
+    @Test
+    void reusedKeyWithADifferentRequestIsRefused() throws Exception {
+        idempotencyService.execute(customerId, "key-1", "fp", Response.class, () -> new Response("a"));
+
+        assertThatThrownBy(() -> idempotencyService.execute(
+                customerId, "key-1", "other-fp", Response.class, () -> new Response("b")))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void keyHeldByAnotherInstanceIsAConflict() {
+        records.put(rowKey(customerId, "key-1"), record("key-1", "fp", IdempotencyRecord.Status.IN_PROGRESS,
+                LocalDateTime.now().plusMinutes(5)));
+
+        assertThatThrownBy(() -> idempotencyService.execute(
+                customerId, "key-1", "fp", Response.class, () -> new Response("a")))
+                .isInstanceOf(IdempotencyConflictException.class);
+    }
+
+    @Test
+    void claimWhoseOwnerDiedIsTakenOver() throws Exception {
+        records.put(rowKey(customerId, "key-1"), record("key-1", "fp", IdempotencyRecord.Status.IN_PROGRESS,
+                LocalDateTime.now().minusSeconds(1)));
+
+        IdempotencyService.Result<Response> result = idempotencyService.execute(
+                customerId, "key-1", "fp", Response.class, () -> new Response("a"));
+
+        assertThat(result.replayed()).isFalse();
+        assertThat(records.get(rowKey(customerId, "key-1")).getStatus()).isEqualTo(IdempotencyRecord.Status.COMPLETED);
+    }
+
+    @Test
+    void responsePastItsWindowFreesTheKeyForAnyRequest() throws Exception {
+        IdempotencyRecord expired = record("key-1", "fp", IdempotencyRecord.Status.COMPLETED,
+                LocalDateTime.now().minusSeconds(1));
+        expired.setResponseBody("{\"value\":\"old\"}");
+        records.put(rowKey(customerId, "key-1"), expired);
+
+        IdempotencyService.Result<Response> result = idempotencyService.execute(
+                customerId, "key-1", "other-fp", Response.class, () -> new Response("new"));
+
+        assertThat(result.replayed()).isFalse();
+        assertThat(result.body().value()).isEqualTo("new");
+        assertThat(records.get(rowKey(customerId, "key-1")).getRequestFingerprint()).isEqualTo("other-fp");
+    }
+
+    @Test
+    void failedRequestReleasesTheKey() throws Exception {
+        assertThatThrownBy(() -> idempotencyService.execute(customerId, "key-1", "fp", Response.class, () -> {
+            throw new BusinessException("storage down");
+        })).isInstanceOf(BusinessException.class);
+        assertThat(records).isEmpty();
+
+        IdempotencyService.Result<Response> retry = idempotencyService.execute(
+                customerId, "key-1", "fp", Response.class, () -> new Response("a"));
+
+        assertThat(retry.replayed()).isFalse();
+    }
+
+    @Test
+    void rejectsBlankAndOverlongKeys() {
+        assertThatThrownBy(() -> idempotencyService.execute(
+                customerId, " ", "fp", Response.class, () -> new Response("a")))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> idempotencyService.execute(
+                customerId, "k".repeat(256), "fp", Response.class, () -> new Response("a")))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void duplicatesOnThisInstanceWaitForTheFirstRequest() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        try {
+            Future<IdempotencyService.Result<Response>> first = executor.submit(() ->
+                    idempotencyService.execute(customerId, "key-1", "fp", Response.class, () -> {
+                        runs.incrementAndGet();
+                        started.countDown();
+                        await(finish);
+                        return new Response("a");
+                    }));
+            started.await();
+
+            List<Future<IdempotencyService.Result<Response>>> duplicates = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                duplicates.add(executor.submit(() -> idempotencyService.execute(
+                        customerId, "key-1", "fp", Response.class, () -> new Response("b-" + runs.incrementAndGet()))));
+            }
+            waitForCoalesced(4);
+            finish.countDown();
+
+            assertThat(first.get().replayed()).isFalse();
+            for (Future<IdempotencyService.Result<Response>> duplicate : duplicates) {
+                assertThat(duplicate.get().replayed()).isTrue();
+                assertThat(duplicate.get().body().value()).isEqualTo("a");
+            }
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void duplicatesSeeTheFailureOfTheRequestTheyJoined() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() ->
+                    idempotencyService.execute(customerId, "key-1", "fp", Response.class, () -> {
+                        started.countDown();
+                        await(finish);
+                        throw new BusinessException("storage down");
+                    }));
+            started.await();
+
+            Future<?> duplicate = executor.submit(() -> idempotencyService.execute(
+                    customerId, "key-1", "fp", Response.class, () -> new Response("b")));
+            waitForCoalesced(1);
+            finish.countDown();
+
+            assertThatThrownBy(first::get).hasCauseInstanceOf(BusinessException.class);
+            assertThatThrownBy(duplicate::get).hasCauseInstanceOf(BusinessException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fingerprintSeparatesItsParts() {
+        assertThat(IdempotencyService.fingerprint("ab", "c")).isEqualTo(IdempotencyService.fingerprint("ab", "c"));
+        assertThat(IdempotencyService.fingerprint("ab", "c")).isNotEqualTo(IdempotencyService.fingerprint("a", "bc"));
+        assertThat(IdempotencyService.fingerprint("a", null)).isNotEqualTo(IdempotencyService.fingerprint("a", ""));
+    }
+
+    private IdempotencyRecord record(String key, String fingerprint, IdempotencyRecord.Status status, LocalDateTime expiresAt) {
+        return IdempotencyRecord.builder()
+                .customerId(customerId)
+                .idempotencyKey(key)
+                .requestFingerprint(fingerprint)
+                .status(status)
+                .createdAt(LocalDateTime.now().minusMinutes(10))
+                .expiresAt(expiresAt)
+                .build();
+    }
+
+    private void waitForCoalesced(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.counter("idempotency.coalesced").count() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(meterRegistry.counter("idempotency.coalesced").count()).isEqualTo(count);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String rowKey(UUID customerId, String idempotencyKey) {
+        return customerId + "/" + idempotencyKey;
+    }
+
+    record Response(String value) {}
+}
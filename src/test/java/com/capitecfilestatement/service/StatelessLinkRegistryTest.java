@@ -0,0 +1,64 @@
+package com.capitecfilestatement.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatelessLinkRegistryTest {
+
+    private final StatelessLinkRegistry registry = new StatelessLinkRegistry(new SimpleMeterRegistry());
+    private final UUID nonce = UUID.randomUUID();
+    private final Instant expiresAt = Instant.now().plusSeconds(600);
+
+    @Test
+    void spendsANonceOnce() {
+        assertThat(registry.trySpend(nonce, expiresAt, "10.0.0.1")).isTrue();
+        assertThat(registry.trySpend(nonce, expiresAt, "10.0.0.1")).isFalse();
+        assertThat(registry.trySpend(nonce, expiresAt, "10.0.0.2")).isFalse();
+    }
+
+    @Test
+    void unspentNonceCannotBeResumed() {
+        assertThat(registry.tryResume(nonce, expiresAt, "10.0.0.1", 3)).isFalse();
+    }
+
+    @Test
+    void onlyTheSpendingClientResumes() {
+        registry.trySpend(nonce, expiresAt, "10.0.0.1");
+
+        assertThat(registry.tryResume(nonce, expiresAt, "10.0.0.2", 3)).isFalse();
+        assertThat(registry.tryResume(nonce, expiresAt, "10.0.0.1", 3)).isTrue();
+    }
+
+    @Test
+    void resumesStopAtTheLimit() {
+        registry.trySpend(nonce, expiresAt, "10.0.0.1");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(registry.tryResume(nonce, expiresAt, "10.0.0.1", 3)).isTrue();
+        }
+        assertThat(registry.tryResume(nonce, expiresAt, "10.0.0.1", 3)).isFalse();
+    }
+
+    @Test
+    void spendWithoutAClientAddressCannotBeResumed() {
+        registry.trySpend(nonce, expiresAt, null);
+
+        assertThat(registry.tryResume(nonce, expiresAt, null, 3)).isFalse();
+    }
+
+    @Test
+    void expiredBucketsArePurged() {
+        Instant expired = Instant.now().minusSeconds(600);
+        registry.trySpend(nonce, expired, "10.0.0.1");
+
+        registry.purgeExpired();
+
+        assertThat(registry.tryResume(nonce, expired, "10.0.0.1", 3)).isFalse();
+        assertThat(registry.trySpend(nonce, expired, "10.0.0.1")).isTrue();
+    }
+}
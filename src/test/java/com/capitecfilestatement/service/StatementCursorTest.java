@@ -0,0 +1,76 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.exception.ValidationException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatementCursorTest {
+
+    private final UUID id = UUID.randomUUID();
+
+    @Test
+    void decodesWhatItEncodes() {
+        StatementCursor cursor = StatementCursor.decode(StatementCursor.encode("2024-03", id));
+
+        assertThat(cursor).isEqualTo(new StatementCursor("2024-03", id));
+    }
+
+    @Test
+    void encodesAsUrlSafeBase64WithoutPadding() {
+        String encoded = StatementCursor.encode("2024-03", id);
+
+        assertThat(encoded).matches("[A-Za-z0-9_-]+");
+    }
+
+    @Test
+    void periodContainingTheSeparatorSurvivesTheRoundTrip() {
+        StatementCursor cursor = StatementCursor.decode(StatementCursor.encode("2024|03", id));
+
+        assertThat(cursor.statementPeriod()).isEqualTo("2024|03");
+        assertThat(cursor.id()).isEqualTo(id);
+    }
+
+    @Test
+    void rejectsTextThatIsNotBase64() {
+        assertThatThrownBy(() -> StatementCursor.decode("not a cursor!"))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void rejectsCursorWithoutASeparator() {
+        assertThatThrownBy(() -> StatementCursor.decode(encodeRaw("2024-03" + id)))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void rejectsCursorWithoutAPeriod() {
+        assertThatThrownBy(() -> StatementCursor.decode(encodeRaw("|" + id)))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void rejectsCursorWhoseIdIsNotAUuid() {
+        assertThatThrownBy(() -> StatementCursor.decode(encodeRaw("2024-03|42")))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> StatementCursor.decode(encodeRaw("2024-03|")))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void rejectsTruncatedCursor() {
+        String encoded = StatementCursor.encode("2024-03", id);
+
+        assertThatThrownBy(() -> StatementCursor.decode(encoded.substring(0, encoded.length() - 8)))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    private static String encodeRaw(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
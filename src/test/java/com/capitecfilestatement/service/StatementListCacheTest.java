@@ -0,0 +1,149 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.dto.StatementListVersion;
+import com.capitecfilestatement.dto.StatementPage;
+import com.capitecfilestatement.repository.AccountStatementRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatementListCacheTest {
+
+    private final UUID customerId = UUID.randomUUID();
+    private final StatementListVersion version = new StatementListVersion(3L, LocalDateTime.of(2024, 3, 1, 12, 0));
+    private final AtomicInteger pageLoads = new AtomicInteger();
+
+    private AccountStatementRepository statementRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private StatementListCache cache;
+
+    @BeforeEach
+    void setUp() {
+        statementRepository = mock(AccountStatementRepository.class);
+        when(statementRepository.findListVersion(customerId)).thenReturn(version);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = newCache(60_000);
+    }
+
+    @Test
+    void revalidationWithinTheVersionTtlSkipsTheDatabase() {
+        String eTag = list(null).eTag();
+
+        StatementListCache.Listing revalidated = list(eTag);
+
+        assertThat(revalidated.body()).isNull();
+        assertThat(revalidated.eTag()).isEqualTo(eTag);
+        verify(statementRepository, times(1)).findListVersion(customerId);
+    }
+
+    @Test
+    void cachedPageWithinTheVersionTtlSkipsTheDatabase() {
+        StatementListCache.Listing first = list(null);
+
+        StatementListCache.Listing second = list(null);
+
+        assertThat(second).isSameAs(first);
+        assertThat(pageLoads).hasValue(1);
+        verify(statementRepository, times(1)).findListVersion(customerId);
+    }
+
+    @Test
+    void writeOnThisInstanceForcesAFreshVersion() {
+        String eTag = list(null).eTag();
+        StatementListVersion changed = new StatementListVersion(4L, LocalDateTime.of(2024, 3, 2, 12, 0));
+        when(statementRepository.findListVersion(customerId)).thenReturn(changed);
+
+        cache.invalidate(customerId);
+        StatementListCache.Listing revalidated = list(eTag);
+
+        assertThat(revalidated.body()).isNotNull();
+        assertThat(revalidated.eTag()).isNotEqualTo(eTag);
+        assertThat(meterRegistry.counter("statement.list.cache.invalidations").count()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidationWaitsForTheWriteToCommit() {
+        String eTag = list(null).eTag();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate(customerId);
+            // Not committed yet: the old version still answers
+            assertThat(list(eTag).body()).isNull();
+            verify(statementRepository, times(1)).findListVersion(customerId);
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCommit();
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        list(eTag);
+        verify(statementRepository, times(2)).findListVersion(customerId);
+    }
+
+    @Test
+    void readThatStartedBeforeAnInvalidationDoesNotRestoreItsVersion() {
+        // A write commits while this read is in progress
+        when(statementRepository.findListVersion(customerId)).thenAnswer(invocation -> {
+            cache.invalidate(customerId);
+            return version;
+        });
+        String eTag = list(null).eTag();
+
+        list(eTag);
+
+        verify(statementRepository, times(2)).findListVersion(customerId);
+    }
+
+    @Test
+    void versionIsReadAgainOnceItsTtlHasPassed() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = newCache(0);
+        String eTag = list(null).eTag();
+
+        list(eTag);
+
+        verify(statementRepository, times(2)).findListVersion(customerId);
+    }
+
+    @Test
+    void matchesWeakAndStrongFormsAndWildcard() {
+        assertThat(StatementListCache.matches("W/\"3-1\"", "W/\"3-1\"")).isTrue();
+        assertThat(StatementListCache.matches("\"3-1\"", "W/\"3-1\"")).isTrue();
+        assertThat(StatementListCache.matches("\"x\", W/\"3-1\"", "W/\"3-1\"")).isTrue();
+        assertThat(StatementListCache.matches("*", "W/\"3-1\"")).isTrue();
+        assertThat(StatementListCache.matches("W/\"3-2\"", "W/\"3-1\"")).isFalse();
+        assertThat(StatementListCache.matches(null, "W/\"3-1\"")).isFalse();
+    }
+
+    private StatementListCache newCache(long versionTtlMillis) {
+        return new StatementListCache(statementRepository, new ObjectMapper().findAndRegisterModules(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), meterRegistry,
+                1000, 300, versionTtlMillis);
+    }
+
+    private StatementListCache.Listing list(String ifNoneMatch) {
+        return cache.getListing(customerId, null, null, null, null, ifNoneMatch, () -> {
+            pageLoads.incrementAndGet();
+            return new StatementPage(List.of(), null);
+        });
+    }
+}
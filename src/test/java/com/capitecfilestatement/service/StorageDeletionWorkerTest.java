@@ -0,0 +1,107 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.entity.StorageDeletion;
+import com.capitecfilestatement.repository.StorageDeletionRepository;
+import com.capitecfilestatement.storage.StatementStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageDeletionWorkerTest {
+
+    private final StorageDeletion first = deletion("statements/a.pdf");
+    private final StorageDeletion second = deletion("statements/b.pdf");
+
+    private StorageDeletionRepository storageDeletionRepository;
+    private StatementStorage statementStorage;
+    private PlatformTransactionManager transactionManager;
+    private StorageDeletionWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        storageDeletionRepository = mock(StorageDeletionRepository.class);
+        statementStorage = mock(StatementStorage.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        worker = new StorageDeletionWorker(storageDeletionRepository, statementStorage,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), 10, 300, 30, 3600);
+
+        when(storageDeletionRepository.claimDue(any(), any(), anyInt())).thenReturn(List.of(first, second));
+    }
+
+    @Test
+    void storageIsCalledBetweenTheClaimAndTheSettleTransactions() {
+        when(statementStorage.deleteBatch(any())).thenReturn(Map.of());
+
+        worker.drain();
+
+        InOrder inOrder = inOrder(storageDeletionRepository, transactionManager, statementStorage);
+        inOrder.verify(storageDeletionRepository).claimDue(any(), any(), eq(10));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(statementStorage).deleteBatch(Set.of("statements/a.pdf", "statements/b.pdf"));
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(storageDeletionRepository).deleteAllByIdInBatch(List.of(first.getId(), second.getId()));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void claimLeasesTheBatchPastTheStorageCall() {
+        when(statementStorage.deleteBatch(any())).thenReturn(Map.of());
+
+        worker.drain();
+
+        verify(storageDeletionRepository).claimDue(any(), argThat(leaseUntil ->
+                leaseUntil.isAfter(LocalDateTime.now().plus(Duration.ofSeconds(290)))), eq(10));
+    }
+
+    @Test
+    void failedKeysAreRescheduledWithBackoff() {
+        when(statementStorage.deleteBatch(any())).thenReturn(Map.of("statements/b.pdf", "AccessDenied"));
+
+        worker.drain();
+
+        verify(storageDeletionRepository).deleteAllByIdInBatch(List.of(first.getId()));
+        verify(storageDeletionRepository).scheduleRetry(eq(second.getId()), eq(1), eq("AccessDenied"),
+                argThat(next -> next.isAfter(LocalDateTime.now().plusSeconds(20))));
+    }
+
+    @Test
+    void storageOutageReschedulesTheWholeBatch() {
+        when(statementStorage.deleteBatch(any())).thenThrow(new IllegalStateException("connection reset"));
+
+        worker.drain();
+
+        verify(storageDeletionRepository).deleteAllByIdInBatch(List.of());
+        verify(storageDeletionRepository).scheduleRetry(eq(first.getId()), eq(1), eq("connection reset"), any());
+        verify(storageDeletionRepository).scheduleRetry(eq(second.getId()), eq(1), eq("connection reset"), any());
+        assertThat(second.getAttempts()).isEqualTo(1);
+    }
+
+    private static StorageDeletion deletion(String s3Key) {
+        return StorageDeletion.builder()
+                .id(UUID.randomUUID())
+                .s3Key(s3Key)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
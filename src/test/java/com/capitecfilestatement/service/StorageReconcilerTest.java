@@ -0,0 +1,83 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.repository.AccountStatementRepository;
+import com.capitecfilestatement.storage.StatementStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageReconcilerTest {
+
+    private final CountDownLatch listingStarted = new CountDownLatch(1);
+    private final CountDownLatch finishListing = new CountDownLatch(1);
+
+    private StatementStorage statementStorage;
+    private StorageReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        statementStorage = mock(StatementStorage.class);
+        when(statementStorage.list(anyString(), any(), any())).thenAnswer(invocation -> {
+            listingStarted.countDown();
+            finishListing.await();
+            return new StatementStorage.ListPage(List.of(), List.of(), null);
+        });
+
+        reconciler = new StorageReconciler(statementStorage, mock(AccountStatementRepository.class),
+                mock(StorageDeletionWorker.class), new SimpleMeterRegistry(),
+                true, StorageReconciler.Mode.REPORT, 24, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        finishListing.countDown();
+        reconciler.shutdown();
+    }
+
+    @Test
+    void scheduledRunReturnsWhileTheRunIsStillGoing() throws Exception {
+        reconciler.scheduledRun();
+
+        // The listing is still blocked, yet the scheduler thread is free again
+        assertThat(listingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(finishListing.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void secondStartIsRejectedWhileARunIsGoing() throws Exception {
+        assertThat(reconciler.start()).isTrue();
+        assertThat(listingStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(reconciler.start()).isFalse();
+
+        finishListing.countDown();
+        verify(statementStorage, timeout(5000).times(1)).list(anyString(), any(), any());
+    }
+
+    @Test
+    void disabledReconcilerDoesNotStart() {
+        StorageReconciler disabled = new StorageReconciler(statementStorage, mock(AccountStatementRepository.class),
+                mock(StorageDeletionWorker.class), new SimpleMeterRegistry(),
+                false, StorageReconciler.Mode.REPORT, 24, 2);
+
+        disabled.scheduledRun();
+        disabled.shutdown();
+
+        verify(statementStorage, never()).list(anyString(), any(), any());
+    }
+}
@@ -0,0 +1,320 @@
+package com.capitecfilestatement.service;
+
+import com.capitecfilestatement.dto.StatementUploadResponse;
+import com.capitecfilestatement.dto.UploadSessionRequest;
+import com.capitecfilestatement.dto.UploadSessionResponse;
+import com.capitecfilestatement.entity.Customer;
+import com.capitecfilestatement.entity.UploadSession;
+import com.capitecfilestatement.exception.BusinessException;
+import com.capitecfilestatement.exception.ResourceNotFoundException;
+import com.capitecfilestatement.exception.UploadOffsetMismatchException;
+import com.capitecfilestatement.exception.ValidationException;
+import com.capitecfilestatement.repository.AccountStatementRepository;
+import com.capitecfilestatement.repository.CustomerRepository;
+import com.capitecfilestatement.repository.UploadReservationRepository;
+import com.capitecfilestatement.repository.UploadSessionRepository;
+import com.capitecfilestatement.storage.StatementStorage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UploadSessionServiceTest {
+
+    private static final int CHUNK = StatementStorage.MIN_PART_SIZE;
+    private static final long FILE_SIZE = 2L * CHUNK + 100;
+
+    private final UUID customerId = UUID.randomUUID();
+    private final UUID sessionId = UUID.randomUUID();
+    private final byte[] file = pdf((int) FILE_SIZE);
+
+    private UploadSessionRepository uploadSessionRepository;
+    private AccountStatementRepository statementRepository;
+    private CustomerRepository customerRepository;
+    private StatementStorage statementStorage;
+    private StorageDeletionWorker storageDeletionWorker;
+    private PlatformTransactionManager transactionManager;
+    private UploadSession session;
+    private UploadSessionService uploadSessionService;
+
+    @BeforeEach
+    void setUp() {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        statementRepository = mock(AccountStatementRepository.class);
+        customerRepository = mock(CustomerRepository.class);
+        statementStorage = mock(StatementStorage.class);
+        storageDeletionWorker = mock(StorageDeletionWorker.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+
+        Customer customer = Customer.builder().id(customerId).active(true).build();
+        session = UploadSession.builder()
+                .id(sessionId)
+                .customer(customer)
+                .statementPeriod("2024-01")
+                .s3Key("statements/key.pdf")
+                .storageUploadId("upload-1")
+                .fileName("statement.pdf")
+                .contentType("application/pdf")
+                .fileSizeBytes(FILE_SIZE)
+                .chunkSizeBytes(CHUNK)
+                .receivedBytes(0L)
+                .expiresAt(LocalDateTime.now().plusHours(1))
+                .build();
+
+        when(customerRepository.findById(customerId)).thenReturn(Optional.of(customer));
+        when(uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId)).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        when(uploadSessionRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(statementRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(statementStorage.uploadPart(anyString(), anyString(), anyInt(), any(), anyInt()))
+                .thenAnswer(invocation -> "etag-" + invocation.getArgument(2));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        uploadSessionService = new UploadSessionService(
+                uploadSessionRepository,
+                mock(UploadReservationRepository.class),
+                statementRepository,
+                customerRepository,
+                statementStorage,
+                new TransactionTemplate(transactionManager),
+                storageDeletionWorker,
+                mock(AuditLogWriter.class),
+                mock(StatementListCache.class),
+                new UploadAdmissionController(meterRegistry, 64L * 1024 * 1024, CHUNK, 100, 1),
+                100L * 1024 * 1024,
+                CHUNK,
+                60);
+    }
+
+    @Test
+    void chunksBecomeConsecutiveParts() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        UploadSessionResponse last = append(2L * CHUNK, 100);
+
+        assertThat(last.getReceivedBytes()).isEqualTo(FILE_SIZE);
+        assertThat(session.getParts()).extracting("partNumber").containsExactly(1, 2, 3);
+        assertThat(session.getParts()).extracting("sizeBytes").containsExactly(CHUNK, CHUNK, 100);
+        assertThat(session.getParts()).extracting("eTag").containsExactly("etag-1", "etag-2", "etag-3");
+    }
+
+    @Test
+    void chunkAtTheWrongOffsetReportsTheExpectedOne() throws Exception {
+        append(0, CHUNK);
+
+        assertThatThrownBy(() -> append(0, CHUNK))
+                .isInstanceOfSatisfying(UploadOffsetMismatchException.class,
+                        e -> assertThat(e.getCurrentOffset()).isEqualTo(CHUNK));
+        assertThatThrownBy(() -> append(2L * CHUNK, 100))
+                .isInstanceOf(UploadOffsetMismatchException.class);
+    }
+
+    @Test
+    void chunkAfterTheLastByteIsRejectedWithoutAnEmptyPart() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        append(2L * CHUNK, 100);
+
+        assertThatThrownBy(() -> uploadSessionService.appendChunk(
+                customerId, sessionId, FILE_SIZE, new ByteArrayInputStream(new byte[0])))
+                .isInstanceOfSatisfying(UploadOffsetMismatchException.class,
+                        e -> assertThat(e.getCurrentOffset()).isEqualTo(FILE_SIZE));
+
+        verify(statementStorage, never()).uploadPart(anyString(), anyString(), eq(4), any(), anyInt());
+        assertThat(session.getParts()).hasSize(3);
+    }
+
+    @Test
+    void shortChunkBeforeTheEndIsRejected() {
+        assertThatThrownBy(() -> uploadSessionService.appendChunk(
+                customerId, sessionId, 0, new ByteArrayInputStream(file, 0, CHUNK - 1)))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(session.getReceivedBytes()).isZero();
+        assertThat(session.getParts()).isEmpty();
+    }
+
+    @Test
+    void oversizedChunkIsRejected() {
+        assertThatThrownBy(() -> uploadSessionService.appendChunk(
+                customerId, sessionId, 0, new ByteArrayInputStream(file, 0, CHUNK + 1)))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(session.getReceivedBytes()).isZero();
+    }
+
+    @Test
+    void firstChunkMustBeAPdf() {
+        byte[] notPdf = Arrays.copyOf(file, CHUNK);
+        notPdf[0] = 'X';
+
+        assertThatThrownBy(() -> uploadSessionService.appendChunk(
+                customerId, sessionId, 0, new ByteArrayInputStream(notPdf)))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    @Test
+    void expiredSessionTakesNoChunks() {
+        session.setExpiresAt(LocalDateTime.now().minusSeconds(1));
+
+        assertThatThrownBy(() -> append(0, CHUNK)).isInstanceOf(BusinessException.class);
+    }
+
+    @Test
+    void incompleteUploadCannotBeCompleted() throws Exception {
+        append(0, CHUNK);
+
+        assertThatThrownBy(() -> uploadSessionService.complete(customerId, sessionId, "127.0.0.1"))
+                .isInstanceOfSatisfying(UploadOffsetMismatchException.class,
+                        e -> assertThat(e.getCurrentOffset()).isEqualTo(CHUNK));
+        verify(statementStorage, never()).completeMultipartUpload(anyString(), anyString(), any());
+    }
+
+    @Test
+    void completeAssemblesTheRecordedPartsAndChecksumsTheWholeFile() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        append(2L * CHUNK, 100);
+
+        StatementUploadResponse response = uploadSessionService.complete(customerId, sessionId, "127.0.0.1");
+
+        String checksum = sha256(file);
+        verify(statementStorage).completeMultipartUpload("statements/key.pdf", "upload-1", List.of(
+                new StatementStorage.StoredPart(1, "etag-1"),
+                new StatementStorage.StoredPart(2, "etag-2"),
+                new StatementStorage.StoredPart(3, "etag-3")));
+        verify(statementRepository).save(argThat(statement ->
+                checksum.equals(statement.getChecksumSha256()) && statement.getFileSizeBytes() == FILE_SIZE));
+        verify(uploadSessionRepository).delete(session);
+        assertThat(response.getFileSizeBytes()).isEqualTo(FILE_SIZE);
+    }
+
+    @Test
+    void storageWorkRunsBetweenTransactions() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        append(2L * CHUNK, 100);
+        clearInvocations(transactionManager);
+
+        uploadSessionService.complete(customerId, sessionId, "127.0.0.1");
+
+        InOrder inOrder = inOrder(transactionManager, statementStorage, statementRepository);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(statementStorage).completeMultipartUpload(anyString(), anyString(), any());
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(statementRepository).save(any());
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void failedCompleteDropsTheSessionAndQueuesTheObject() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        append(2L * CHUNK, 100);
+        when(statementRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate period"));
+
+        assertThatThrownBy(() -> uploadSessionService.complete(customerId, sessionId, "127.0.0.1"))
+                .isInstanceOf(DataIntegrityViolationException.class);
+
+        verify(storageDeletionWorker).enqueue("statements/key.pdf");
+        verify(uploadSessionRepository).delete(session);
+    }
+
+    @Test
+    void completedCompleteQueuesNothing() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        append(2L * CHUNK, 100);
+
+        uploadSessionService.complete(customerId, sessionId, "127.0.0.1");
+
+        verify(storageDeletionWorker, never()).enqueue(anyString());
+    }
+
+    @Test
+    void sessionCompletedConcurrentlyKeepsItsObject() throws Exception {
+        append(0, CHUNK);
+        append(CHUNK, CHUNK);
+        append(2L * CHUNK, 100);
+        when(uploadSessionRepository.findByIdAndCustomerId(sessionId, customerId))
+                .thenReturn(Optional.of(session), Optional.empty());
+        when(uploadSessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> uploadSessionService.complete(customerId, sessionId, "127.0.0.1"))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        verify(storageDeletionWorker, never()).enqueue(anyString());
+    }
+
+    @Test
+    void createRejectsFilesNeedingTooManyParts() {
+        UploadSessionRequest request = new UploadSessionRequest();
+        request.setStatementPeriod("2024-02");
+        request.setFileName("statement.pdf");
+        request.setContentType("application/pdf");
+        request.setFileSizeBytes(10_001L * CHUNK);
+
+        UploadSessionService unlimited = new UploadSessionService(
+                uploadSessionRepository,
+                mock(UploadReservationRepository.class),
+                statementRepository,
+                customerRepository,
+                statementStorage,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                storageDeletionWorker,
+                mock(AuditLogWriter.class),
+                mock(StatementListCache.class),
+                new UploadAdmissionController(new SimpleMeterRegistry(), 64L * 1024 * 1024, CHUNK, 100, 1),
+                Long.MAX_VALUE,
+                CHUNK,
+                60);
+
+        assertThatThrownBy(() -> unlimited.create(customerId, request)).isInstanceOf(ValidationException.class);
+        verify(statementStorage, never()).createMultipartUpload(anyString(), anyString());
+    }
+
+    private UploadSessionResponse append(long offset, int length) throws Exception {
+        return uploadSessionService.appendChunk(
+                customerId, sessionId, offset, new ByteArrayInputStream(file, (int) offset, length));
+    }
+
+    private static byte[] pdf(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        byte[] header = "%PDF".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(header, 0, bytes, 0, header.length);
+        return bytes;
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}